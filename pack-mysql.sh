@@ -0,0 +1,76 @@
+#!/bin/bash
+
+# Sourced by the repack scripts.
+#
+# A pack archive starts with a text index followed by one gzip stream per file,
+# which lets the files be extracted selectively and in parallel:
+#
+#   MYSQLPACK 1
+#   <number of entries>
+#   <type> <octal mode> <offset> <compressed size> <size> <path>
+#   ...
+#   <data>
+#
+# type is 'd' for directories and 'f' for files. offset is relative to the start
+# of the data. Symbolic links are dereferenced.
+
+# args:
+# 1: archive name without extension
+# 2...: files and directories, relative to the current directory
+function write_archive() {
+    local NAME=$1
+    shift
+    if [ "${MYSQL_ARCHIVE_FORMAT:-pack}" = "tar.gz" ]
+    then
+        $TAR --dereference -czf $NAME.tar.gz "$@"
+    else
+        write_pack $NAME.pack "$@"
+    fi
+}
+
+# args:
+# 1: archive name without extension
+function archive_exists() {
+    test -e $1.pack -o -e $1.tar.gz
+}
+
+# args:
+# 1: pack file
+# 2...: files and directories, relative to the current directory
+function write_pack() {
+    local OUTPUT=$1
+    shift
+    local WORKDIR=$(mktemp -d "${TMPDIR:-/tmp}/pack.XXXXXXXXXX")
+    local OFFSET=0
+    local ENTRY MODE SIZE COMPRESSED
+
+    : > $WORKDIR/index
+    : > $WORKDIR/data
+
+    while IFS= read -r ENTRY
+    do
+        ENTRY=${ENTRY#./}
+        if [ -d "$ENTRY" ]
+        then
+            echo "d 755 0 0 0 $ENTRY" >> $WORKDIR/index
+            continue
+        fi
+        MODE=644
+        test -x "$ENTRY" && MODE=755
+        gzip -9 -n -c "$ENTRY" > $WORKDIR/frame
+        SIZE=$(wc -c < "$ENTRY" | tr -d ' ')
+        COMPRESSED=$(wc -c < $WORKDIR/frame | tr -d ' ')
+        echo "f $MODE $OFFSET $COMPRESSED $SIZE $ENTRY" >> $WORKDIR/index
+        cat $WORKDIR/frame >> $WORKDIR/data
+        OFFSET=$((OFFSET + COMPRESSED))
+    done < <(find -L "$@" \( -type d -o -type f \) | LC_ALL=C sort)
+
+    {
+        echo "MYSQLPACK 1"
+        wc -l < $WORKDIR/index | tr -d ' '
+        cat $WORKDIR/index
+        cat $WORKDIR/data
+    } > $OUTPUT
+
+    rm -rf $WORKDIR
+}
@@ -35,6 +35,8 @@ set -x
 
 cd $(dirname $0)
 
+source ../pack-mysql.sh
+
 RESOURCES=target/generated-resources
 
 mkdir -p dist $RESOURCES
@@ -55,7 +57,7 @@ PACKDIR=$(mktemp -d "${TMPDIR:-/tmp}/mysql.XXXXXXXXXX")
 $TAR -xf $LINUX_DIST -C $PACKDIR
 pushd $PACKDIR/$LINUX_BASE
 $STRIP bin/mysqld
-$TAR -czf $OLDPWD/$RESOURCES/mysql-Linux-amd64.tar.gz \
+write_archive $OLDPWD/$RESOURCES/mysql-Linux-amd64 \
   COPYING \
   README \
   docs/INFO* \
@@ -78,14 +80,15 @@ cp usr/bin/resolveip mysql-Linux-ppc64le/bin/
 cp usr/sbin/mysqld mysql-Linux-ppc64le/bin/
 cp -r usr/lib64/* mysql-Linux-ppc64le/lib64/
 cp -r usr/share/mysql mysql-Linux-ppc64le/share/
-$TAR -C ./mysql-Linux-ppc64le -czf $OLDPWD/$RESOURCES/mysql-Linux-ppc64le.tar.gz bin lib64 share data
+DEST=$OLDPWD/$RESOURCES
+(cd mysql-Linux-ppc64le && write_archive $DEST/mysql-Linux-ppc64le bin lib64 share data)
 popd
 rm -rf $PACKDIR
 
 PACKDIR=$(mktemp -d "${TMPDIR:-/tmp}/mysql.XXXXXXXXXX")
 $TAR -xf $OSX_DIST -C $PACKDIR
 pushd $PACKDIR/$OSX_BASE
-$TAR -czf $OLDPWD/$RESOURCES/mysql-Mac_OS_X-x86_64.tar.gz \
+write_archive $OLDPWD/$RESOURCES/mysql-Mac_OS_X-x86_64 \
   COPYING \
   README \
   docs/INFO* \
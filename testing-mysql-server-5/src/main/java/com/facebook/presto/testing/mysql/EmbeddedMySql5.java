@@ -59,7 +59,8 @@ final class EmbeddedMySql5
                     "--bind-address=localhost",
                     "--port=" + String.valueOf(getPort()),
                     "--datadir=" + getDataDirectory(),
-                    "--socket=" + getSocketDirectory());
+                    "--socket=" + getSocketDirectory(),
+                    "--tmpdir=" + getTemporaryDirectory());
 
         if (isMariadb) {
             return iList
@@ -67,7 +68,7 @@ final class EmbeddedMySql5
                     "--basedir=" + getBaseDirectory(),
                     "--plugin-dir=" + getMariadbPluginDirectory(),
                     "--log-error=" + getDataDirectory() + "mariadb.log",
-                    "--pid-file=" + getDataDirectory() + "mariadb.pid")
+                    "--pid-file=" + getPidFile())
                 .build();
         }
         else {
@@ -76,8 +77,22 @@ final class EmbeddedMySql5
                     "--skip-ssl",
                     "--disable-partition-engine-check",
                     "--explicit_defaults_for_timestamp",
+                    "--pid-file=" + getPidFile(),
                     "--lc_messages_dir=" + getShareDirectory())
                 .build();
         }
     }
+
+    @Override
+    protected List<String> getProfileArguments(MySqlProfile profile)
+    {
+        if (profile != MySqlProfile.MINIMAL_MEMORY) {
+            return profile.getServerArguments();
+        }
+        // the query cache is disabled, but still allocated by default
+        return ImmutableList.<String>builder()
+                .addAll(profile.getServerArguments())
+                .add("--query_cache_size=0")
+                .build();
+    }
 }
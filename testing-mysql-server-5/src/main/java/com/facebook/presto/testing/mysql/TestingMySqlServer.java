@@ -13,8 +13,14 @@
  */
 package com.facebook.presto.testing.mysql;
 
+import com.google.common.collect.ImmutableList;
+
 import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 
 public final class TestingMySqlServer
@@ -35,12 +41,46 @@ public final class TestingMySqlServer
     public TestingMySqlServer(String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
             throws Exception
     {
-        super(new EmbeddedMySql5(mySqlOptions), user, password, databases);
+        super(createEmbeddedMySql(mySqlOptions, user, databases), user, password, databases);
+    }
+
+    private static EmbeddedMySql createEmbeddedMySql(MySqlOptions mySqlOptions, String user, Iterable<String> databases)
+            throws Exception
+    {
+        if (mySqlOptions.isShared()) {
+            return SharedEmbeddedMySql.attach(EmbeddedMySql5.class.getName(), mySqlOptions, user, databases, () -> new EmbeddedMySql5(mySqlOptions));
+        }
+        return new EmbeddedMySql5(mySqlOptions);
+    }
+
+    public static CompletableFuture<TestingMySqlServer> startAsync(String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
+    {
+        return startServerAsync(() -> new TestingMySqlServer(user, password, databases, mySqlOptions));
+    }
+
+    public static CompletableFuture<List<TestingMySqlServer>> startAllAsync(int count, String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
+    {
+        return startServersAsync(count, () -> new TestingMySqlServer(user, password, databases, mySqlOptions));
+    }
+
+    public static MySqlServerPool createPool(int maxServers, MySqlOptions mySqlOptions)
+    {
+        // the pools of the JVMs attached to a shared server must not use the same user
+        return new MySqlServerPool(maxServers, () -> new TestingMySqlServer("pool_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16), "pool", ImmutableList.of(), mySqlOptions));
+    }
+
+    // the nodes share the user and databases, and the user is used for replication
+    public static TestingMySqlCluster createCluster(int replicas, String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
+            throws Exception
+    {
+        // MariaDB has a different GTID implementation
+        checkState(!isMariadb, "Replication clusters require MySQL GTID replication, which the MariaDB server used on %s does not support", System.getProperty("os.arch"));
+        return new TestingMySqlCluster(ReplicationDialect.MYSQL_5_7, replicas, mySqlOptions, options -> new TestingMySqlServer(user, password, databases, options));
     }
 
     @Override
     public String getJdbcUrl(String database)
     {
-        return format("jdbc:mysql://localhost:%s/%s?user=%s&password=%s&useSSL=false", getPort(), database, getUser(), getPassword());
+        return format("jdbc:mysql://localhost:%s/%s?user=%s&password=%s&useSSL=false", getPort(), database, getUser(), getPassword()) + getConnectionParameters();
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.mysql.jdbc.SocketFactory;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Properties;
+
+// Connects to the socket file registered for the port, see MySqlOptions.Builder#setUseUnixSocket
+public class UnixSocketFactory
+        implements SocketFactory
+{
+    private Socket socket;
+
+    @Override
+    public Socket connect(String host, int port, Properties properties)
+            throws IOException
+    {
+        socket = UnixDomainSockets.connect(host, port, Integer.parseInt(properties.getProperty("connectTimeout", "0")));
+        return socket;
+    }
+
+    @Override
+    public Socket beforeHandshake()
+    {
+        return socket;
+    }
+
+    @Override
+    public Socket afterHandshake()
+    {
+        return socket;
+    }
+}
@@ -13,6 +13,12 @@
  */
 package com.facebook.presto.testing.mysql;
 
+import com.google.common.collect.ImmutableList;
+import org.testng.SkipException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import static java.util.Arrays.asList;
 
 public class TestTestingMySqlServer
@@ -28,9 +34,31 @@ public class TestTestingMySqlServer
     }
 
     @Override
-    public AbstractTestingMySqlServer createMySqlServer(String user, String password, String... databases)
+    public AbstractTestingMySqlServer createMySqlServer(MySqlOptions mySqlOptions, String user, String password, String... databases)
+            throws Exception
+    {
+        return new TestingMySqlServer(user, password, asList(databases), mySqlOptions);
+    }
+
+    @Override
+    public MySqlServerPool createMySqlServerPool(int maxServers)
+    {
+        return TestingMySqlServer.createPool(maxServers, MySqlOptions.builder().build());
+    }
+
+    @Override
+    public CompletableFuture<? extends List<? extends AbstractTestingMySqlServer>> startMySqlServersAsync(int count, String user, String password)
+    {
+        return TestingMySqlServer.startAllAsync(count, user, password, ImmutableList.of(), MySqlOptions.builder().build());
+    }
+
+    @Override
+    public TestingMySqlCluster createMySqlCluster(int replicas, String user, String password, String... databases)
             throws Exception
     {
-        return new TestingMySqlServer(user, password, asList(databases), MySqlOptions.builder().build());
+        if (isMariadb) {
+            throw new SkipException("Replication clusters are not supported with MariaDB");
+        }
+        return TestingMySqlServer.createCluster(replicas, user, password, asList(databases), MySqlOptions.builder().build());
     }
 }
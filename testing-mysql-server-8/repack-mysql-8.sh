@@ -36,6 +36,8 @@ set -x
 
 cd $(dirname $0)
 
+source ../pack-mysql.sh
+
 RESOURCES=target/generated-resources
 
 mkdir -p dist $RESOURCES
@@ -52,12 +54,12 @@ test -e $MACOS_DIST || curl -L -o $MACOS_DIST "$BASEURL/$MACOS_NAME" --fail
 # args:
 # 1: DIST name
 # 2: BASE name
-# 3: packed name (e.g. mysql-$platform-$arch.tar.gz
+# 3: packed name without extension (e.g. mysql-$platform-$arch)
 function pack_macos() {
     PACKDIR=$(mktemp -d "${TMPDIR:-/tmp}/mysql.XXXXXXXXXX")
     $TAR -xf $1 -C $PACKDIR
     pushd $PACKDIR/$2
-    $TAR --dereference -czf $OLDPWD/$RESOURCES/$3 \
+    write_archive $OLDPWD/$RESOURCES/$3 \
       LICENSE \
       README \
       docs/INFO* \
@@ -80,7 +82,7 @@ function pack_macos() {
 # args:
 # 1: DIST name
 # 2: BASE name
-# 3: packed name (e.g. mysql-$platform-$arch.tar.gz
+# 3: packed name without extension (e.g. mysql-$platform-$arch)
 function pack_linux() {
     PACKDIR=$(mktemp -d "${TMPDIR:-/tmp}/mysql.XXXXXXXXXX")
     $TAR -xf $1 -C $PACKDIR
@@ -90,7 +92,7 @@ function pack_linux() {
     # binary to point to libaio.so which should exist on all systems when
     # libaio-dev/devel are installed
     $PATCHELF --replace-needed libaio.so.1 libaio.so bin/mysqld
-    $TAR --dereference -czf $OLDPWD/$RESOURCES/$3 \
+    write_archive $OLDPWD/$RESOURCES/$3 \
       LICENSE \
       README \
       docs/INFO* \
@@ -107,5 +109,5 @@ function pack_linux() {
     rm -rf $PACKDIR
 }
 
-test -e $RESOURCES/mysql-Mac_OS_X-amd64.tar.gz || pack_macos $MACOS_DIST $MACOS_BASE mysql-Mac_OS_X-amd64.tar.gz
-test -e $RESOURCES/mysql-Linux-amd64.tar.gz || pack_linux $LINUX_DIST $LINUX_BASE mysql-Linux-amd64.tar.gz
+archive_exists $RESOURCES/mysql-Mac_OS_X-amd64 || pack_macos $MACOS_DIST $MACOS_BASE mysql-Mac_OS_X-amd64
+archive_exists $RESOURCES/mysql-Linux-amd64 || pack_linux $LINUX_DIST $LINUX_BASE mysql-Linux-amd64
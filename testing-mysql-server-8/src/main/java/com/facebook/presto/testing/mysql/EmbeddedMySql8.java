@@ -49,9 +49,30 @@ final class EmbeddedMySql8
                 "--innodb-flush-log-at-trx-commit=0",
                 "--innodb-doublewrite=0",
                 "--bind-address=localhost",
+                // used by TableLoader, disabled by default since MySQL 8.0
+                "--local-infile=1",
                 "--lc_messages_dir", getShareDirectory(),
+                "--tmpdir", getTemporaryDirectory(),
                 "--socket", getSocketDirectory(),
+                "--pid-file", getPidFile(),
                 "--port", String.valueOf(getPort()),
                 "--datadir", getDataDirectory());
     }
+
+    @Override
+    protected List<String> getProfileArguments(MySqlProfile profile)
+    {
+        ImmutableList.Builder<String> arguments = ImmutableList.<String>builder()
+                .addAll(profile.getServerArguments());
+        if (profile.isDisableBinaryLog()) {
+            // the binary log is enabled by default since MySQL 8.0
+            arguments.add("--skip-log-bin");
+        }
+        if (profile == MySqlProfile.MINIMAL_MEMORY) {
+            arguments.add(
+                    "--innodb_log_writer_threads=OFF",
+                    "--temptable_max_ram=2M");
+        }
+        return arguments.build();
+    }
 }
@@ -13,8 +13,13 @@
  */
 package com.facebook.presto.testing.mysql;
 
+import com.google.common.collect.ImmutableList;
+
 import java.util.Arrays;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static java.lang.String.format;
 
@@ -36,12 +41,44 @@ public final class TestingMySqlServer
     public TestingMySqlServer(String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
             throws Exception
     {
-        super(new EmbeddedMySql8(mySqlOptions), user, password, databases);
+        super(createEmbeddedMySql(mySqlOptions, user, databases), user, password, databases);
+    }
+
+    private static EmbeddedMySql createEmbeddedMySql(MySqlOptions mySqlOptions, String user, Iterable<String> databases)
+            throws Exception
+    {
+        if (mySqlOptions.isShared()) {
+            return SharedEmbeddedMySql.attach(EmbeddedMySql8.class.getName(), mySqlOptions, user, databases, () -> new EmbeddedMySql8(mySqlOptions));
+        }
+        return new EmbeddedMySql8(mySqlOptions);
+    }
+
+    public static CompletableFuture<TestingMySqlServer> startAsync(String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
+    {
+        return startServerAsync(() -> new TestingMySqlServer(user, password, databases, mySqlOptions));
+    }
+
+    public static CompletableFuture<List<TestingMySqlServer>> startAllAsync(int count, String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
+    {
+        return startServersAsync(count, () -> new TestingMySqlServer(user, password, databases, mySqlOptions));
+    }
+
+    public static MySqlServerPool createPool(int maxServers, MySqlOptions mySqlOptions)
+    {
+        // the pools of the JVMs attached to a shared server must not use the same user
+        return new MySqlServerPool(maxServers, () -> new TestingMySqlServer("pool_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16), "pool", ImmutableList.of(), mySqlOptions));
+    }
+
+    // the nodes share the user and databases, and the user is used for replication
+    public static TestingMySqlCluster createCluster(int replicas, String user, String password, Iterable<String> databases, MySqlOptions mySqlOptions)
+            throws Exception
+    {
+        return new TestingMySqlCluster(ReplicationDialect.MYSQL_8_4, replicas, mySqlOptions, options -> new TestingMySqlServer(user, password, databases, options));
     }
 
     @Override
     public String getJdbcUrl(String database)
     {
-        return format("jdbc:mysql://localhost:%s/%s?user=%s&password=%s&useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=" + TimeZone.getDefault().getID(), getPort(), database, getUser(), getPassword());
+        return format("jdbc:mysql://localhost:%s/%s?user=%s&password=%s&useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=" + TimeZone.getDefault().getID(), getPort(), database, getUser(), getPassword()) + getConnectionParameters();
     }
 }
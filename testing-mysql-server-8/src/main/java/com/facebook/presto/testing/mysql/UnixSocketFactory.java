@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.mysql.cj.conf.PropertyKey;
+import com.mysql.cj.conf.PropertySet;
+import com.mysql.cj.protocol.ServerSession;
+import com.mysql.cj.protocol.SocketConnection;
+import com.mysql.cj.protocol.SocketFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Connects to the socket file registered for the port, see MySqlOptions.Builder#setUseUnixSocket
+public class UnixSocketFactory
+        implements SocketFactory
+{
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Closeable> T connect(String host, int port, PropertySet properties, int loginTimeout)
+            throws IOException
+    {
+        return (T) UnixDomainSockets.connect(host, port, properties.getIntegerProperty(PropertyKey.connectTimeout).getValue());
+    }
+
+    @Override
+    public <T extends Closeable> T performTlsHandshake(SocketConnection socketConnection, ServerSession serverSession)
+            throws IOException
+    {
+        throw new IOException("TLS is not supported by " + getClass().getName() + ", connect with useSSL=false");
+    }
+}
@@ -13,7 +13,11 @@
  */
 package com.facebook.presto.testing.mysql;
 
+import com.google.common.collect.ImmutableList;
+
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class TestTestingMySqlServer
         extends AbstractTestTestingMySqlServer
@@ -25,9 +29,28 @@ public class TestTestingMySqlServer
     }
 
     @Override
-    public AbstractTestingMySqlServer createMySqlServer(String user, String password, String... databases)
+    public AbstractTestingMySqlServer createMySqlServer(MySqlOptions mySqlOptions, String user, String password, String... databases)
+            throws Exception
+    {
+        return new TestingMySqlServer(user, password, Arrays.asList(databases), mySqlOptions);
+    }
+
+    @Override
+    public MySqlServerPool createMySqlServerPool(int maxServers)
+    {
+        return TestingMySqlServer.createPool(maxServers, MySqlOptions.builder().build());
+    }
+
+    @Override
+    public CompletableFuture<? extends List<? extends AbstractTestingMySqlServer>> startMySqlServersAsync(int count, String user, String password)
+    {
+        return TestingMySqlServer.startAllAsync(count, user, password, ImmutableList.of(), MySqlOptions.builder().build());
+    }
+
+    @Override
+    public TestingMySqlCluster createMySqlCluster(int replicas, String user, String password, String... databases)
             throws Exception
     {
-        return new TestingMySqlServer(user, password, Arrays.asList(databases), MySqlOptions.builder().build());
+        return TestingMySqlServer.createCluster(replicas, user, password, Arrays.asList(databases), MySqlOptions.builder().build());
     }
 }
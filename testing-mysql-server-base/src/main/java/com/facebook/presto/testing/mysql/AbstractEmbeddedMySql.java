@@ -14,53 +14,97 @@
 package com.facebook.presto.testing.mysql;
 
 import com.facebook.airlift.log.Logger;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.VerifyException;
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
 import io.airlift.command.Command;
 import io.airlift.command.CommandFailedException;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
-import java.io.File;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.URL;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.testing.mysql.Directories.cloneDirectory;
+import static com.facebook.presto.testing.mysql.Directories.copyDirectory;
+import static com.facebook.presto.testing.mysql.Directories.directorySize;
+import static com.facebook.presto.testing.mysql.PackExtractor.extractPack;
+import static com.facebook.presto.testing.mysql.ProcFileSystem.readPid;
+import static com.facebook.presto.testing.mysql.TarExtractor.extractTarGz;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.StandardSystemProperty.OS_ARCH;
 import static com.google.common.base.StandardSystemProperty.OS_NAME;
-import static com.google.common.io.MoreFiles.deleteRecursively;
-import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
-import static java.io.File.createTempFile;
+import static com.google.common.hash.Hashing.sha256;
+import static io.airlift.units.DataSize.succinctBytes;
+import static io.airlift.units.Duration.succinctNanos;
 import static java.lang.String.format;
-import static java.nio.file.Files.copy;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.createTempDirectory;
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getFileStore;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isWritable;
+import static java.util.Locale.ENGLISH;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public abstract class AbstractEmbeddedMySql
         implements EmbeddedMySql
 {
     private static final Logger log = Logger.get(AbstractEmbeddedMySql.class);
 
-    private static final String JDBC_FORMAT = "jdbc:mysql://localhost:%s/%s?user=%s&useSSL=false&serverTimezone=" + TimeZone.getDefault().getID();
+    private static final String JDBC_FORMAT = "jdbc:mysql://localhost:%s/%s?user=%s&useSSL=false&allowLoadLocalInfile=true&allowMultiQueries=true&serverTimezone=" + TimeZone.getDefault().getID();
+
+    private static final Map<String, String> ARCHIVE_HASHES = new ConcurrentHashMap<>();
+
+    private static final Path SHARED_MEMORY = Paths.get("/dev/shm");
+
+    private static final long STARTUP_PROBE_INTERVAL_MILLIS = 50;
+
+    // about three hours of samples at one second intervals
+    private static final int MAX_RUNTIME_STATS_SAMPLES = 10_000;
 
     private final ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("testing-mysql-server-%s"));
+    private final ScheduledExecutorService statsExecutor = newSingleThreadScheduledExecutor(daemonThreadsNamed("testing-mysql-server-stats-%s"));
+    private final Deque<RuntimeStats> runtimeStatsHistory = new ArrayDeque<>();
     private final Path serverDirectory;
+    private final Path binaryDirectory;
     private final int port = randomPort();
     private final AtomicBoolean closed = new AtomicBoolean();
     private final Process mysqld;
@@ -68,6 +112,17 @@ public abstract class AbstractEmbeddedMySql
     private final Duration startupWait;
     private final Duration shutdownWait;
     private final Duration commandTimeout;
+    private final boolean initializeFromTemplate;
+    private final MySqlOptions mySqlOptions;
+    private final boolean useUnixSocket;
+    private final StartupStats startupStats;
+
+    private volatile PooledDataSource rootDataSource;
+    private volatile OptionalLong pid = OptionalLong.empty();
+
+    private Duration archiveExtractionTime = new Duration(0, NANOSECONDS);
+    private Duration processLaunchTime = new Duration(0, NANOSECONDS);
+    private Duration firstConnectionTime = new Duration(0, NANOSECONDS);
 
     // for ppc64le, mariadb 10.2.x is used as an alternative for mysql 5.7
     protected final boolean isMariadb = System.getProperty("os.arch").equals("ppc64le");
@@ -78,15 +133,48 @@ public abstract class AbstractEmbeddedMySql
         this.startupWait = requireNonNull(mySqlOptions.getStartupWait(), "startupWait is null");
         this.shutdownWait = requireNonNull(mySqlOptions.getShutdownWait(), "shutdownWait is null");
         this.commandTimeout = requireNonNull(mySqlOptions.getCommandTimeout(), "commandTimeout is null");
+        this.initializeFromTemplate = mySqlOptions.isInitializeFromTemplate();
+        this.mySqlOptions = mySqlOptions;
+        this.useUnixSocket = mySqlOptions.isUseUnixSocket() && UnixDomainSockets.isSupported();
+        if (mySqlOptions.isUseUnixSocket() && !useUnixSocket) {
+            log.warn("Unix domain sockets require Java 16 or later, connecting over TCP");
+        }
 
-        serverDirectory = createTempDirectory("testing-mysql-server");
+        serverDirectory = createServerDirectory(mySqlOptions);
 
         log.info("Starting MySQL server in %s", serverDirectory);
 
         try {
-            unpackMySql(serverDirectory);
-            initialize();
+            createDirectories(serverDirectory.resolve("tmp"));
+            DirectoryCache cache = new DirectoryCache(mySqlOptions.getCacheDirectory());
+            binaryDirectory = unpackMySql(cache);
+
+            Stopwatch initialization = Stopwatch.createStarted();
+            initialize(cache);
+            Duration initializationTime = elapsed(initialization);
+
+            if (useUnixSocket) {
+                UnixDomainSockets.register(port, Paths.get(getSocketDirectory()));
+            }
             mysqld = startMysqld();
+            pid = readPid(Paths.get(getPidFile()));
+            rootDataSource = PooledDataSource.create(getJdbcUrl("root", "mysql"), mySqlOptions);
+            if (mySqlOptions.isStatementDigests()) {
+                excludeRootStatements();
+            }
+
+            mySqlOptions.getRuntimeStatsInterval().ifPresent(interval -> statsExecutor.scheduleWithFixedDelay(
+                    this::recordRuntimeStats,
+                    interval.toMillis(),
+                    interval.toMillis(),
+                    MILLISECONDS));
+
+            startupStats = new StartupStats(
+                    archiveExtractionTime,
+                    initializationTime,
+                    processLaunchTime,
+                    firstConnectionTime,
+                    new Duration(0, NANOSECONDS));
         }
         catch (Exception e) {
             close();
@@ -98,20 +186,148 @@ public abstract class AbstractEmbeddedMySql
 
     public abstract List<String> getStartArguments();
 
+    // settings for the configured profile, passed after the start arguments
+    protected List<String> getProfileArguments(MySqlProfile profile)
+    {
+        return profile.getServerArguments();
+    }
+
     public String getJdbcUrl(String userName, String dbName)
     {
-        return format(JDBC_FORMAT, port, dbName, userName);
+        return getJdbcUrl(port, userName, dbName, useUnixSocket);
+    }
+
+    static String getJdbcUrl(int port, String userName, String dbName, boolean useUnixSocket)
+    {
+        String url = format(JDBC_FORMAT, port, dbName, userName);
+        return useUnixSocket ? url + "&socketFactory=" + UnixDomainSockets.SOCKET_FACTORY : url;
     }
 
+    @Override
     public int getPort()
     {
         return port;
     }
 
+    @Override
+    public MySqlOptions getMySqlOptions()
+    {
+        return mySqlOptions;
+    }
+
+    @Override
+    public StartupStats getStartupStats()
+    {
+        return startupStats;
+    }
+
+    @Override
+    public Optional<DataSize> getResidentMemory()
+    {
+        if (!pid.isPresent() || mysqld == null || !mysqld.isAlive()) {
+            return Optional.empty();
+        }
+        return ProcFileSystem.getResidentMemory(pid.getAsLong());
+    }
+
+    @Override
+    public RuntimeStats getRuntimeStats()
+            throws SQLException
+    {
+        try (Connection connection = getMySqlDatabase()) {
+            return collectRuntimeStats(connection, mysqld.isAlive() ? pid : OptionalLong.empty(), serverDirectory.resolve("data"));
+        }
+    }
+
+    static RuntimeStats collectRuntimeStats(Connection connection, OptionalLong pid, Path dataDirectory)
+            throws SQLException
+    {
+        Map<String, Long> status = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("" +
+                        "SHOW GLOBAL STATUS WHERE Variable_name IN (" +
+                        "'Queries', 'Innodb_rows_read', 'Innodb_rows_inserted', 'Innodb_rows_updated', 'Innodb_rows_deleted', " +
+                        "'Innodb_buffer_pool_read_requests', 'Innodb_buffer_pool_reads')")) {
+            while (resultSet.next()) {
+                status.put(resultSet.getString(1).toLowerCase(ENGLISH), resultSet.getLong(2));
+            }
+        }
+
+        long dataDirectorySize;
+        try {
+            dataDirectorySize = directorySize(dataDirectory);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new RuntimeStats(
+                Instant.now(),
+                pid.isPresent() ? ProcFileSystem.getCpuTime(pid.getAsLong()) : Optional.empty(),
+                pid.isPresent() ? ProcFileSystem.getResidentMemory(pid.getAsLong()) : Optional.empty(),
+                pid.isPresent() ? ProcFileSystem.getOpenFiles(pid.getAsLong()) : OptionalInt.empty(),
+                succinctBytes(dataDirectorySize),
+                status.getOrDefault("queries", 0L),
+                status.getOrDefault("innodb_rows_read", 0L),
+                status.getOrDefault("innodb_rows_inserted", 0L),
+                status.getOrDefault("innodb_rows_updated", 0L),
+                status.getOrDefault("innodb_rows_deleted", 0L),
+                status.getOrDefault("innodb_buffer_pool_read_requests", 0L),
+                status.getOrDefault("innodb_buffer_pool_reads", 0L));
+    }
+
+    @Override
+    public List<RuntimeStats> getRuntimeStatsHistory()
+    {
+        synchronized (runtimeStatsHistory) {
+            return ImmutableList.copyOf(runtimeStatsHistory);
+        }
+    }
+
+    private void recordRuntimeStats()
+    {
+        RuntimeStats stats;
+        try {
+            stats = getRuntimeStats();
+        }
+        catch (SQLException | RuntimeException e) {
+            log.debug(e, "Failed to sample runtime stats");
+            return;
+        }
+        synchronized (runtimeStatsHistory) {
+            if (runtimeStatsHistory.size() == MAX_RUNTIME_STATS_SAMPLES) {
+                runtimeStatsHistory.removeFirst();
+            }
+            runtimeStatsHistory.addLast(stats);
+        }
+    }
+
+    @Override
+    public boolean isUsingUnixSocket()
+    {
+        return useUnixSocket;
+    }
+
+    @Override
     public Connection getMySqlDatabase()
             throws SQLException
     {
-        return DriverManager.getConnection(getJdbcUrl("root", "mysql"));
+        PooledDataSource dataSource = rootDataSource;
+        if (dataSource == null) {
+            // mysqld is still starting, or is loading a dataset image
+            return DriverManager.getConnection(getJdbcUrl("root", "mysql"));
+        }
+        return dataSource.getConnection();
+    }
+
+    Path getServerDirectory()
+    {
+        return serverDirectory;
+    }
+
+    OptionalLong getPid()
+    {
+        return pid;
     }
 
     protected String getMariadbInstallDb()
@@ -119,17 +335,17 @@ public abstract class AbstractEmbeddedMySql
         if (!isMariadb) {
             throw new VerifyException("mysql_install_db not applicable to non-mariadb installations");
         }
-        return serverDirectory.resolve("bin").resolve("mysql_install_db").toString();
+        return binaryDirectory.resolve("bin").resolve("mysql_install_db").toString();
     }
 
     protected String getBaseDirectory()
     {
-        return serverDirectory.toString();
+        return binaryDirectory.toString();
     }
 
     protected String getMysqld()
     {
-        return serverDirectory.resolve("bin").resolve("mysqld").toString();
+        return binaryDirectory.resolve("bin").resolve("mysqld").toString();
     }
 
     protected String getDataDirectory()
@@ -137,14 +353,24 @@ public abstract class AbstractEmbeddedMySql
         return serverDirectory.resolve("data").toString();
     }
 
+    protected String getTemporaryDirectory()
+    {
+        return serverDirectory.resolve("tmp").toString();
+    }
+
     protected String getShareDirectory()
     {
-        return serverDirectory.resolve("share").toString();
+        return binaryDirectory.resolve("share").toString();
     }
 
     protected String getSocketDirectory()
     {
-        return (isMariadb ? getDataDirectory() + "mysql.sock" : serverDirectory.resolve("mysql.sock").toString());
+        return (isMariadb ? Paths.get(getDataDirectory()).resolve("mysql.sock") : serverDirectory.resolve("mysql.sock")).toString();
+    }
+
+    protected String getPidFile()
+    {
+        return (isMariadb ? Paths.get(getDataDirectory()).resolve("mariadb.pid") : serverDirectory.resolve("mysqld.pid")).toString();
     }
 
     protected String getMariadbPluginDirectory()
@@ -152,7 +378,7 @@ public abstract class AbstractEmbeddedMySql
         if (!isMariadb) {
             throw new VerifyException("--plugin-dir option not applicable to non-mariadb installations");
         }
-        return serverDirectory.resolve("lib64").resolve("mysql").resolve("plugin").toString();
+        return binaryDirectory.resolve("lib64").resolve("mysql").resolve("plugin").toString();
     }
 
     @Override
@@ -162,16 +388,18 @@ public abstract class AbstractEmbeddedMySql
             return;
         }
 
-        if (mysqld != null) {
-            log.info("Shutting down mysqld. Waiting up to %s for shutdown to finish.", startupWait);
+        statsExecutor.shutdownNow();
 
-            mysqld.destroyForcibly();
+        if (mysqld != null) {
+            log.info("Shutting down mysqld. Waiting up to %s for shutdown to finish.", shutdownWait);
 
-            try {
-                mysqld.waitFor(shutdownWait.toMillis(), MILLISECONDS);
+            if (mySqlOptions.getShutdownMode() == ShutdownMode.GRACEFUL) {
+                shutdownGracefully(mysqld);
             }
-            catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+
+            if (mysqld.isAlive()) {
+                mysqld.destroyForcibly();
+                waitForExit(mysqld);
             }
 
             if (mysqld.isAlive()) {
@@ -179,25 +407,91 @@ public abstract class AbstractEmbeddedMySql
             }
         }
 
-        try {
-            deleteRecursively(serverDirectory, ALLOW_INSECURE);
+        if (rootDataSource != null) {
+            rootDataSource.close();
         }
-        catch (IOException e) {
-            log.warn(e, "Failed to delete %s", serverDirectory);
+        UnixDomainSockets.unregister(port);
+
+        switch (mySqlOptions.getDirectoryCleanup()) {
+            case DELETE:
+                DirectoryCleaner.delete(serverDirectory);
+                break;
+            case DELETE_ASYNC:
+                DirectoryCleaner.deleteAsync(serverDirectory);
+                break;
+            case RETAIN:
+                log.info("Retaining %s", serverDirectory);
+                break;
         }
 
         executor.shutdownNow();
     }
 
+    private void shutdownGracefully(Process process)
+    {
+        try (Connection connection = getMySqlDatabase();
+                Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        catch (SQLException e) {
+            log.warn(e, "SHUTDOWN failed, killing mysqld");
+            return;
+        }
+        waitForExit(process);
+    }
+
+    private void waitForExit(Process process)
+    {
+        try {
+            process.waitFor(shutdownWait.toMillis(), MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public String toString()
     {
         return toStringHelper(this)
                 .add("serverDirectory", serverDirectory)
+                .add("binaryDirectory", binaryDirectory)
                 .add("port", port)
                 .toString();
     }
 
+    private static Path createServerDirectory(MySqlOptions mySqlOptions)
+            throws IOException
+    {
+        if (mySqlOptions.getServerDirectory().isPresent()) {
+            return createDirectories(mySqlOptions.getServerDirectory().get());
+        }
+
+        if (mySqlOptions.getDataDirectoryRoot().isPresent()) {
+            Path root = mySqlOptions.getDataDirectoryRoot().get();
+            createDirectories(root);
+            if (!hasFreeSpace(root, mySqlOptions.getMinFreeSpace())) {
+                log.warn("Less than %s available in %s", mySqlOptions.getMinFreeSpace(), root);
+            }
+            return createTempDirectory(root, "testing-mysql-server");
+        }
+
+        if (mySqlOptions.isPreferSharedMemory() && isDirectory(SHARED_MEMORY) && isWritable(SHARED_MEMORY)) {
+            if (hasFreeSpace(SHARED_MEMORY, mySqlOptions.getMinFreeSpace())) {
+                return createTempDirectory(SHARED_MEMORY, "testing-mysql-server");
+            }
+            log.warn("Less than %s available in %s, falling back to the temporary directory", mySqlOptions.getMinFreeSpace(), SHARED_MEMORY);
+        }
+
+        return createTempDirectory("testing-mysql-server");
+    }
+
+    private static boolean hasFreeSpace(Path path, DataSize minFreeSpace)
+            throws IOException
+    {
+        return getFileStore(path).getUsableSpace() >= minFreeSpace.toBytes();
+    }
+
     private static int randomPort()
             throws IOException
     {
@@ -206,7 +500,110 @@ public abstract class AbstractEmbeddedMySql
         }
     }
 
-    private void initialize()
+    private void initialize(DirectoryCache cache)
+            throws IOException
+    {
+        Path dataDirectory = serverDirectory.resolve("data");
+        if (exists(dataDirectory)) {
+            log.info("Reusing data directory %s", dataDirectory);
+            return;
+        }
+
+        if (mySqlOptions.getDataset().isPresent()) {
+            MySqlDataset dataset = mySqlOptions.getDataset().get();
+            Path image = cache.getDirectory(getImageKey(dataset), target -> {
+                createDataDirectory(cache);
+                loadDataset(dataset);
+                copyDirectory(dataDirectory, target);
+            });
+
+            // the data directory already exists if this server built the image
+            if (!exists(dataDirectory)) {
+                cloneDataDirectory(image);
+            }
+            return;
+        }
+
+        createDataDirectory(cache);
+    }
+
+    private void createDataDirectory(DirectoryCache cache)
+            throws IOException
+    {
+        if (!initializeFromTemplate) {
+            initializeDataDirectory();
+            return;
+        }
+
+        Path dataDirectory = serverDirectory.resolve("data");
+        Path template = cache.getDirectory(getTemplateKey(), target -> {
+            initializeDataDirectory();
+            copyDirectory(dataDirectory, target);
+        });
+
+        // the data directory already exists if this server built the template
+        if (!exists(dataDirectory)) {
+            cloneDataDirectory(template);
+        }
+    }
+
+    private void cloneDataDirectory(Path source)
+            throws IOException
+    {
+        Path dataDirectory = serverDirectory.resolve("data");
+        cloneDirectory(source, dataDirectory, executor, commandTimeout);
+        // each server must generate its own server UUID
+        deleteIfExists(dataDirectory.resolve("auto.cnf"));
+    }
+
+    private void loadDataset(MySqlDataset dataset)
+            throws IOException
+    {
+        log.info("Loading dataset %s", dataset.getName());
+        Process process = startMysqld();
+        try {
+            try (Connection connection = getMySqlDatabase();
+                    Statement statement = connection.createStatement()) {
+                // the binary log is not needed to restore the image
+                statement.execute("SET sql_log_bin = 0");
+                dataset.load(connection);
+            }
+            catch (SQLException e) {
+                throw new IOException("Failed to load dataset " + dataset.getName(), e);
+            }
+
+            // only a clean shutdown leaves the files in a state that can be copied
+            shutdownGracefully(process);
+            if (process.isAlive()) {
+                throw new IOException("mysqld did not shut down after loading dataset " + dataset.getName());
+            }
+        }
+        finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+                waitForExit(process);
+            }
+        }
+    }
+
+    private String getImageKey(MySqlDataset dataset)
+    {
+        return "dataset-" + sha256().hashString(getTemplateKey() + '\0' + dataset.getName(), UTF_8);
+    }
+
+    private String getTemplateKey()
+    {
+        // the template depends on the binaries and on the initialization arguments, minus server specific paths
+        StringBuilder key = new StringBuilder(binaryDirectory.getFileName().toString());
+        for (String argument : getInitializationArguments()) {
+            key.append('\0').append(argument
+                    .replace(serverDirectory.toString(), "${serverDirectory}")
+                    .replace(binaryDirectory.toString(), "${binaryDirectory}"));
+        }
+        return "data-" + sha256().hashString(key, UTF_8);
+    }
+
+    private void initializeDataDirectory()
     {
         if (isMariadb) {
             system(ImmutableList.<String>builder()
@@ -222,35 +619,127 @@ public abstract class AbstractEmbeddedMySql
         }
     }
 
+    // checksums are disabled, since the binlog streams would only skip them
+    private List<String> getBinaryLogArguments()
+    {
+        if (!mySqlOptions.isRowBinaryLog()) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.of(
+                "--server-id=1",
+                "--log-bin=binlog",
+                "--binlog-format=ROW",
+                "--binlog-row-image=FULL",
+                "--binlog-checksum=NONE");
+    }
+
+    // overrides profiles that disable the performance schema
+    private List<String> getStatementDigestArguments()
+    {
+        if (!mySqlOptions.isStatementDigests()) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.of(
+                "--performance_schema=ON",
+                "--performance_schema_instrument=statement/%=ON",
+                "--performance_schema_consumer_global_instrumentation=ON",
+                "--performance_schema_consumer_thread_instrumentation=ON",
+                "--performance_schema_consumer_statements_digest=ON");
+    }
+
+    // the statements of the root connections, such as provisioning, snapshots and the digest queries, are not part of the
+    // workload of the tests; MariaDB has the performance schema of MySQL 5.6, whose setup_actors cannot exclude a user,
+    // so only the root connections that are already open are excluded there
+    private void excludeRootStatements()
+            throws IOException
+    {
+        try (Connection connection = getMySqlDatabase();
+                Statement statement = connection.createStatement()) {
+            if (!isMariadb) {
+                statement.execute("INSERT INTO performance_schema.setup_actors (HOST, USER, ROLE, ENABLED, HISTORY) VALUES ('%', 'root', '%', 'NO', 'NO')");
+            }
+            statement.execute("UPDATE performance_schema.threads SET INSTRUMENTED = 'NO' WHERE PROCESSLIST_USER = 'root'");
+            StatementDigest.reset(connection);
+        }
+        catch (SQLException e) {
+            throw new IOException("Failed to exclude the root connections from the statement digests", e);
+        }
+    }
+
     private Process startMysqld()
             throws IOException
     {
-        Process process = new ProcessBuilder(ImmutableList.<String>builder().add(getMysqld()).addAll(getStartArguments()).build())
+        Stopwatch launch = Stopwatch.createStarted();
+        // mysqld uses the last value of repeated options, so the profile and the server arguments override the defaults
+        List<String> command = ImmutableList.<String>builder()
+                .add(getMysqld())
+                .addAll(getStartArguments())
+                .addAll(getProfileArguments(mySqlOptions.getProfile()))
+                .addAll(getBinaryLogArguments())
+                .addAll(getStatementDigestArguments())
+                .addAll(mySqlOptions.getServerArguments())
+                .addAll(getLogArguments())
+                .build();
+        Process process = new ProcessBuilder(command)
                 .redirectErrorStream(true)
                 .start();
 
         log.info("mysqld started on port %s. Waiting up to %s for startup to finish.", port, startupWait);
 
-        startOutputProcessor(process.getInputStream());
+        CountDownLatch readyForConnections = new CountDownLatch(1);
+        startOutputProcessor(process.getInputStream(), readyForConnections);
 
-        waitForServerStartup(process);
+        try {
+            waitForServerStartup(process, readyForConnections, launch);
+        }
+        catch (IOException | RuntimeException e) {
+            process.destroyForcibly();
+            throw e;
+        }
 
         return process;
     }
 
-    private void waitForServerStartup(Process process)
+    private List<String> getLogArguments()
+    {
+        // a shared server outlives this JVM, which reads its output, so it logs to a file and startup is detected by probing
+        if (mySqlOptions.isShared()) {
+            return ImmutableList.of("--log-error=" + serverDirectory.resolve("mysqld.log"));
+        }
+        return ImmutableList.of();
+    }
+
+    private void waitForServerStartup(Process process, CountDownLatch readyForConnections, Stopwatch launch)
             throws IOException
     {
+        Stopwatch firstConnection = null;
         Throwable lastCause = null;
         long start = System.nanoTime();
         while (Duration.nanosSince(start).compareTo(startupWait) <= 0) {
+            // mysqld logs when it is ready, but MariaDB logs to a file, so also probe the port
+            boolean ready;
             try {
-                checkReady();
-                log.info("mysqld startup finished");
+                ready = readyForConnections.await(STARTUP_PROBE_INTERVAL_MILLIS, MILLISECONDS) || isAcceptingConnections();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 return;
             }
-            catch (SQLException e) {
-                lastCause = e;
+
+            if (ready) {
+                if (firstConnection == null) {
+                    processLaunchTime = elapsed(launch);
+                    firstConnection = Stopwatch.createStarted();
+                }
+                try {
+                    checkReady();
+                    firstConnectionTime = elapsed(firstConnection);
+                    log.info("mysqld startup finished");
+                    return;
+                }
+                catch (SQLException e) {
+                    lastCause = e;
+                }
             }
 
             try {
@@ -262,17 +751,30 @@ public abstract class AbstractEmbeddedMySql
                 // process is still running, loop and try again
             }
 
-            try {
-                Thread.sleep(10);
-            }
-            catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return;
+            if (ready) {
+                // the server is listening but not accepting queries yet
+                try {
+                    Thread.sleep(10);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
         }
         throw new IOException("mysqld failed to start after " + startupWait, lastCause);
     }
 
+    private boolean isAcceptingConnections()
+    {
+        try (SocketChannel channel = SocketChannel.open()) {
+            return channel.connect(new InetSocketAddress("localhost", port));
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
     private void checkReady()
             throws SQLException
     {
@@ -293,11 +795,17 @@ public abstract class AbstractEmbeddedMySql
         }
     }
 
-    private void startOutputProcessor(InputStream in)
+    private void startOutputProcessor(InputStream in, CountDownLatch readyForConnections)
     {
         executor.execute(() -> {
-            try {
-                ByteStreams.copy(in, System.out);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.out.println(line);
+                    if (line.contains("ready for connections") && !line.contains("X Plugin")) {
+                        readyForConnections.countDown();
+                    }
+                }
             }
             catch (IOException ignored) {
             }
@@ -316,29 +824,65 @@ public abstract class AbstractEmbeddedMySql
         }
     }
 
-    private void unpackMySql(Path target)
+    private Path unpackMySql(DirectoryCache cache)
             throws IOException
     {
-        String archiveName = format("/mysql-%s.tar.gz", getPlatform());
-        URL url = AbstractEmbeddedMySql.class.getResource(archiveName);
+        // prefer the pack format, which can be extracted in parallel, and fall back to the tarball
+        String baseName = format("/mysql-%s", getPlatform());
+        URL pack = AbstractEmbeddedMySql.class.getResource(baseName + ".pack");
+        URL url = (pack != null) ? pack : AbstractEmbeddedMySql.class.getResource(baseName + ".tar.gz");
         if (url == null) {
-            throw new RuntimeException("archive not found: " + archiveName);
+            throw new RuntimeException("archive not found: " + baseName + ".tar.gz");
         }
 
-        File archive = createTempFile("mysql-", null);
-        try {
+        return cache.getDirectory(hashArchive(url), target -> {
+            Stopwatch archiveExtraction = Stopwatch.createStarted();
             try (InputStream in = url.openStream()) {
-                copy(in, archive.toPath(), REPLACE_EXISTING);
+                if (pack != null) {
+                    extractPack(in, target, AbstractEmbeddedMySql::isRuntimeFile);
+                }
+                else {
+                    extractTarGz(in, target);
+                }
             }
-            system(ImmutableList.of("tar", "-xf", archive.getPath(), "-C", target.toString()));
+            archiveExtractionTime = elapsed(archiveExtraction);
+        });
+    }
+
+    private static boolean isRuntimeFile(String path)
+    {
+        // the licenses and documentation are bundled for distribution, but mysqld never reads them
+        return !path.equals("LICENSE") &&
+                !path.equals("COPYING") &&
+                !path.equals("README") &&
+                !path.equals("docs") &&
+                !path.startsWith("docs/");
+    }
+
+    private static String hashArchive(URL url)
+            throws IOException
+    {
+        // concurrent startups wait for a single thread to hash the archive
+        try {
+            return ARCHIVE_HASHES.computeIfAbsent(url.toString(), key -> {
+                try {
+                    return Resources.asByteSource(url).hash(sha256()).toString();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
         }
-        finally {
-            if (!archive.delete()) {
-                log.warn("Failed to delete file %s", archive);
-            }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
+    private static Duration elapsed(Stopwatch stopwatch)
+    {
+        return succinctNanos(stopwatch.elapsed(NANOSECONDS));
+    }
+
     private static String getPlatform()
     {
         return (OS_NAME.value() + "-" + OS_ARCH.value()).replace(' ', '_');
@@ -14,17 +14,42 @@
 package com.facebook.presto.testing.mysql;
 
 import com.facebook.airlift.log.Logger;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+
+import javax.sql.DataSource;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
-import static java.lang.String.format;
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.Duration.succinctNanos;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public abstract class AbstractTestingMySqlServer
         implements Closeable
@@ -32,7 +57,11 @@ public abstract class AbstractTestingMySqlServer
     private static final Logger log = Logger.get(AbstractTestingMySqlServer.class);
 
     // for ppc64le, mariadb 10.2.x is used as an alternative for mysql 5.7
-    private static final boolean isMariadb = System.getProperty("os.arch").equals("ppc64le");
+    static final boolean isMariadb = System.getProperty("os.arch").equals("ppc64le");
+
+    private static final int DEFAULT_BINLOG_CAPACITY = 1024;
+
+    private static final ExecutorService STARTUP_EXECUTOR = newCachedThreadPool(daemonThreadsNamed("testing-mysql-server-startup-%s"));
 
     private final String user;
     private final String password;
@@ -40,6 +69,9 @@ public abstract class AbstractTestingMySqlServer
     private final int port;
     private final String version;
     private final EmbeddedMySql server;
+    private final StartupStats startupStats;
+    private final Map<String, DatabaseSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, PooledDataSource> dataSources = new ConcurrentHashMap<>();
 
     public AbstractTestingMySqlServer(EmbeddedMySql server, String user, String password, Iterable<String> databases)
             throws Exception
@@ -50,35 +82,81 @@ public abstract class AbstractTestingMySqlServer
         this.databases = ImmutableSet.copyOf(requireNonNull(databases, "databases is null"));
         this.port = server.getPort();
 
+        Stopwatch provisioning = Stopwatch.createStarted();
         try (Connection connection = server.getMySqlDatabase()) {
             version = connection.getMetaData().getDatabaseProductVersion();
-            try (Statement statement = connection.createStatement()) {
-                execute(statement, format("CREATE USER '%s'@'localhost' IDENTIFIED BY '%s'", user, password));
-                execute(statement, format("GRANT ALL ON *.* to '%s'@'localhost' WITH GRANT OPTION", user));
-                for (String database : databases) {
-                    execute(statement, format("CREATE DATABASE %s", database));
-                }
-            }
+            // a data directory that is reused or restored from a dataset image may already contain these
+            MySqlProvisioning.Builder statements = MySqlProvisioning.builder()
+                    .createUser(user, password)
+                    .grantAll(user);
+            this.databases.forEach(statements::createDatabase);
+            statements.build().execute(connection);
         }
         catch (SQLException e) {
             close();
             throw e;
         }
 
+        startupStats = server.getStartupStats().withProvisioning(succinctNanos(provisioning.elapsed(NANOSECONDS)));
+        if (server.getMySqlOptions().isLogStartupStats()) {
+            log.info("MySQL startup stats: %s", startupStats);
+        }
+
         log.info("MySQL server ready: %s", getJdbcUrl());
     }
 
-    private static void execute(Statement statement, String sql)
-            throws SQLException
+    protected static <T extends AbstractTestingMySqlServer> CompletableFuture<T> startServerAsync(Callable<T> factory)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        STARTUP_EXECUTOR.execute(() -> {
+            try {
+                future.complete(factory.call());
+            }
+            catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    protected static <T extends AbstractTestingMySqlServer> CompletableFuture<List<T>> startServersAsync(int count, Callable<T> factory)
     {
-        log.debug("Executing: %s", sql);
-        statement.execute(sql);
+        checkArgument(count > 0, "count must be positive");
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(startServerAsync(factory));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, failure) -> {
+                    if (failure == null) {
+                        return futures.stream()
+                                .map(CompletableFuture::join)
+                                .collect(toImmutableList());
+                    }
+
+                    // do not leak the servers that did start
+                    for (CompletableFuture<T> future : futures) {
+                        if (!future.isCompletedExceptionally()) {
+                            try {
+                                future.join().close();
+                            }
+                            catch (IOException | RuntimeException e) {
+                                failure.addSuppressed(e);
+                            }
+                        }
+                    }
+                    throwIfUnchecked(failure);
+                    throw new CompletionException(failure);
+                });
     }
 
     @Override
     public void close()
             throws IOException
     {
+        dataSources.values().forEach(PooledDataSource::close);
+        dataSources.clear();
         server.close();
     }
 
@@ -107,10 +185,183 @@ public abstract class AbstractTestingMySqlServer
         return port;
     }
 
+    public StartupStats getStartupStats()
+    {
+        return startupStats;
+    }
+
+    public Optional<DataSize> getResidentMemory()
+    {
+        return server.getResidentMemory();
+    }
+
+    public RuntimeStats getRuntimeStats()
+            throws SQLException
+    {
+        return server.getRuntimeStats();
+    }
+
+    public List<RuntimeStats> getRuntimeStatsHistory()
+    {
+        return server.getRuntimeStatsHistory();
+    }
+
+    // the statistics of the statements executed since the server started or resetStatementDigests(), see MySqlOptions.Builder#setStatementDigests
+    public List<StatementDigest> getStatementDigests()
+            throws SQLException
+    {
+        checkState(server.getMySqlOptions().isStatementDigests(), "server was not started with statement digests");
+        try (Connection connection = getRootConnection()) {
+            return StatementDigest.read(connection);
+        }
+    }
+
+    public void resetStatementDigests()
+            throws SQLException
+    {
+        checkState(server.getMySqlOptions().isStatementDigests(), "server was not started with statement digests");
+        try (Connection connection = getRootConnection()) {
+            StatementDigest.reset(connection);
+        }
+    }
+
+    public void snapshot(String database)
+            throws SQLException
+    {
+        try (Connection connection = getRootConnection()) {
+            snapshots.put(database, DatabaseSnapshot.create(connection, database));
+        }
+    }
+
+    public void restore(String database)
+            throws SQLException
+    {
+        DatabaseSnapshot snapshot = snapshots.get(database);
+        checkArgument(snapshot != null, "no snapshot for database: %s", database);
+        try (Connection connection = getRootConnection()) {
+            snapshot.restore(connection);
+        }
+    }
+
+    public void dropSnapshot(String database)
+            throws SQLException
+    {
+        DatabaseSnapshot snapshot = snapshots.remove(database);
+        checkArgument(snapshot != null, "no snapshot for database: %s", database);
+        try (Connection connection = getRootConnection()) {
+            snapshot.drop(connection);
+        }
+    }
+
+    public long loadTable(String database, String table, Stream<Object[]> rows)
+            throws SQLException
+    {
+        return loadTable(database, table, rows.iterator());
+    }
+
+    // creates or drops databases and users on the running server in as few round trips as possible
+    public void provision(MySqlProvisioning provisioning)
+            throws SQLException
+    {
+        try (Connection connection = getRootConnection()) {
+            provisioning.execute(connection);
+        }
+    }
+
+    // values are in the order of the table columns, excluding generated columns
+    public long loadTable(String database, String table, Iterator<Object[]> rows)
+            throws SQLException
+    {
+        try (Connection connection = getRootConnection()) {
+            return TableLoader.loadTable(connection, database, table, rows);
+        }
+    }
+
+    public BinlogStream openBinlogStream()
+            throws SQLException, IOException
+    {
+        return openBinlogStream(DEFAULT_BINLOG_CAPACITY);
+    }
+
+    // streams the rows changed after this call, needs a server started with MySqlOptions.Builder#setRowBinaryLog
+    public BinlogStream openBinlogStream(int capacity)
+            throws SQLException, IOException
+    {
+        checkState(server.getMySqlOptions().isRowBinaryLog(), "server was not started with a row based binary log");
+        String file = null;
+        long position = 0;
+        try (Connection connection = getRootConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SHOW BINARY LOGS")) {
+            // the end of the current log
+            while (resultSet.next()) {
+                file = resultSet.getString("Log_name");
+                position = resultSet.getLong("File_size");
+            }
+        }
+        checkState(file != null, "binary log is not enabled");
+        return BinlogStream.open(port, file, position, capacity);
+    }
+
     public String getJdbcUrl()
     {
         return getJdbcUrl("");
     }
 
     public abstract String getJdbcUrl(String database);
+
+    // the URL of getJdbcUrl(String) with the user and password parameters replaced
+    public String getJdbcUrl(String database, String user, String password)
+    {
+        String url = getJdbcUrl(database);
+        int query = url.indexOf('?');
+        List<String> parameters = new ArrayList<>();
+        parameters.add("user=" + user);
+        parameters.add("password=" + password);
+        if (query >= 0) {
+            Splitter.on('&').omitEmptyStrings().split(url.substring(query + 1)).forEach(parameter -> {
+                if (!parameter.startsWith("user=") && !parameter.startsWith("password=")) {
+                    parameters.add(parameter);
+                }
+            });
+            url = url.substring(0, query);
+        }
+        return url + "?" + Joiner.on('&').join(parameters);
+    }
+
+    // appended to the JDBC URLs, which otherwise connect over TCP
+    protected String getConnectionParameters()
+    {
+        return server.isUsingUnixSocket() ? "&socketFactory=" + UnixDomainSockets.SOCKET_FACTORY : "";
+    }
+
+    public DataSource getDataSource()
+    {
+        return getDataSource("");
+    }
+
+    public DataSource getDataSource(String database)
+    {
+        return getDataSource(database, user, password);
+    }
+
+    // connections are pooled per database and user, and closed with the server
+    public DataSource getDataSource(String database, String user, String password)
+    {
+        return dataSources.computeIfAbsent(getJdbcUrl(database, user, password), url -> PooledDataSource.create(url, server.getMySqlOptions()));
+    }
+
+    void closeDataSource(String database, String user, String password)
+    {
+        PooledDataSource dataSource = dataSources.remove(getJdbcUrl(database, user, password));
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    Connection getRootConnection()
+            throws SQLException
+    {
+        return server.getMySqlDatabase();
+    }
 }
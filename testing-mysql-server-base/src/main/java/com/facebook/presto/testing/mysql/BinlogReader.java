@@ -0,0 +1,800 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+// A minimal client of the replication protocol, which connects as root without a password and decodes the
+// row events of a server started with MySqlOptions.Builder#setRowBinaryLog. Integers are decoded as signed
+// Integer or Long values, DECIMAL as BigDecimal, DATE, DATETIME and TIMESTAMP as LocalDate, LocalDateTime and
+// Instant (zero dates as null), TIME as java.time.Duration, character columns as UTF-8 strings, ENUM as the
+// Integer index, SET and BIT as Long, and BLOB, TEXT, JSON (in the binary format of the server) and GEOMETRY
+// columns as byte arrays.
+final class BinlogReader
+        implements Closeable
+{
+    private static final int CLIENT_LONG_PASSWORD = 0x1;
+    private static final int CLIENT_PROTOCOL_41 = 0x200;
+    private static final int CLIENT_TRANSACTIONS = 0x2000;
+    private static final int CLIENT_SECURE_CONNECTION = 0x8000;
+    private static final int CLIENT_PLUGIN_AUTH = 0x80000;
+
+    private static final int UTF8_GENERAL_CI = 33;
+    private static final int MAX_PACKET_LENGTH = 0xFFFFFF;
+
+    private static final int COM_QUERY = 0x03;
+    private static final int COM_BINLOG_DUMP = 0x12;
+
+    private static final int FORMAT_DESCRIPTION_EVENT = 15;
+    private static final int TABLE_MAP_EVENT = 19;
+    private static final int WRITE_ROWS_EVENT_V1 = 23;
+    private static final int UPDATE_ROWS_EVENT_V1 = 24;
+    private static final int DELETE_ROWS_EVENT_V1 = 25;
+    private static final int WRITE_ROWS_EVENT = 30;
+    private static final int UPDATE_ROWS_EVENT = 31;
+    private static final int DELETE_ROWS_EVENT = 32;
+
+    private static final int EVENT_HEADER_LENGTH = 19;
+    private static final int CHECKSUM_LENGTH = 4;
+
+    static final int TYPE_TINY = 1;
+    static final int TYPE_SHORT = 2;
+    static final int TYPE_LONG = 3;
+    static final int TYPE_FLOAT = 4;
+    static final int TYPE_DOUBLE = 5;
+    static final int TYPE_TIMESTAMP = 7;
+    static final int TYPE_LONGLONG = 8;
+    static final int TYPE_INT24 = 9;
+    static final int TYPE_DATE = 10;
+    static final int TYPE_TIME = 11;
+    static final int TYPE_DATETIME = 12;
+    static final int TYPE_YEAR = 13;
+    static final int TYPE_VARCHAR = 15;
+    static final int TYPE_BIT = 16;
+    static final int TYPE_TIMESTAMP2 = 17;
+    static final int TYPE_DATETIME2 = 18;
+    static final int TYPE_TIME2 = 19;
+    static final int TYPE_JSON = 245;
+    static final int TYPE_NEWDECIMAL = 246;
+    static final int TYPE_ENUM = 247;
+    static final int TYPE_SET = 248;
+    static final int TYPE_TINY_BLOB = 249;
+    static final int TYPE_MEDIUM_BLOB = 250;
+    static final int TYPE_LONG_BLOB = 251;
+    static final int TYPE_BLOB = 252;
+    static final int TYPE_VAR_STRING = 253;
+    static final int TYPE_STRING = 254;
+    static final int TYPE_GEOMETRY = 255;
+
+    private static final int[] DIGITS_TO_BYTES = {0, 1, 1, 2, 2, 3, 3, 4, 4, 4};
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final Map<Long, TableMap> tables = new HashMap<>();
+    private int sequence;
+    private boolean checksums;
+
+    private BinlogReader(Socket socket)
+            throws IOException
+    {
+        this.socket = requireNonNull(socket, "socket is null");
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    // streams the events after the given position, the server id must be unique among the replicas of the server
+    public static BinlogReader open(int port, String file, long position, int serverId)
+            throws IOException
+    {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress("localhost", port));
+            socket.setTcpNoDelay(true);
+            BinlogReader reader = new BinlogReader(socket);
+            reader.authenticate();
+            // announce that checksums are understood, the server refuses to stream events with checksums otherwise
+            reader.query("SET @master_binlog_checksum = @@GLOBAL.binlog_checksum, @source_binlog_checksum = @@GLOBAL.binlog_checksum");
+            reader.requestDump(file, position, serverId);
+            return reader;
+        }
+        catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // returns the changes of the next row event, or empty when the server ended the stream
+    public Optional<List<RowChange>> readRowChanges()
+            throws IOException
+    {
+        while (true) {
+            byte[] packet = readPacket();
+            int status = packet[0] & 0xFF;
+            if (status == 0xFF) {
+                throw error(packet);
+            }
+            if (status == 0xFE && packet.length < 9) {
+                return Optional.empty();
+            }
+            List<RowChange> changes = readEvent(packet);
+            if (!changes.isEmpty()) {
+                return Optional.of(changes);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        socket.close();
+    }
+
+    private void authenticate()
+            throws IOException
+    {
+        byte[] handshake = readPacket();
+        if ((handshake[0] & 0xFF) == 0xFF) {
+            throw error(handshake);
+        }
+        Buffer buffer = new Buffer(handshake, 0, handshake.length);
+        buffer.skip(1);
+        buffer.readNullTerminatedString();
+        // connection id, first part of the scramble, filler, lower capabilities, character set, status and upper capabilities
+        buffer.skip(4 + 8 + 1 + 2 + 1 + 2 + 2);
+        int scrambleLength = buffer.readUnsignedByte();
+        buffer.skip(10 + Math.max(13, scrambleLength - 8));
+        String plugin = buffer.readNullTerminatedString();
+
+        // an empty password is sent as an empty response with every authentication method
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        writeInt(response, CLIENT_LONG_PASSWORD | CLIENT_PROTOCOL_41 | CLIENT_TRANSACTIONS | CLIENT_SECURE_CONNECTION | CLIENT_PLUGIN_AUTH, 4);
+        writeInt(response, MAX_PACKET_LENGTH, 4);
+        response.write(UTF8_GENERAL_CI);
+        response.write(new byte[23]);
+        writeNullTerminatedString(response, "root");
+        response.write(0);
+        writeNullTerminatedString(response, plugin);
+        writePacket(response.toByteArray());
+
+        while (true) {
+            byte[] packet = readPacket();
+            switch (packet[0] & 0xFF) {
+                case 0x00:
+                    return;
+                case 0xFF:
+                    throw error(packet);
+                case 0xFE:
+                    // switch to another authentication method
+                    writePacket(new byte[0]);
+                    break;
+                case 0x01:
+                    // the result of the fast authentication, followed by the final result
+                    break;
+                default:
+                    throw new IOException("Unexpected authentication packet: " + (packet[0] & 0xFF));
+            }
+        }
+    }
+
+    private void query(String sql)
+            throws IOException
+    {
+        ByteArrayOutputStream command = new ByteArrayOutputStream();
+        command.write(COM_QUERY);
+        command.write(sql.getBytes(UTF_8));
+        sequence = 0;
+        writePacket(command.toByteArray());
+
+        byte[] packet = readPacket();
+        if ((packet[0] & 0xFF) == 0xFF) {
+            throw error(packet);
+        }
+    }
+
+    private void requestDump(String file, long position, int serverId)
+            throws IOException
+    {
+        ByteArrayOutputStream command = new ByteArrayOutputStream();
+        command.write(COM_BINLOG_DUMP);
+        writeInt(command, position, 4);
+        writeInt(command, 0, 2);
+        writeInt(command, serverId, 4);
+        command.write(file.getBytes(UTF_8));
+        sequence = 0;
+        writePacket(command.toByteArray());
+    }
+
+    private List<RowChange> readEvent(byte[] packet)
+            throws IOException
+    {
+        Buffer buffer = new Buffer(packet, 1, packet.length);
+        Instant timestamp = Instant.ofEpochSecond(buffer.readInt(4));
+        int type = buffer.readUnsignedByte();
+        buffer.skip(4);
+        int length = (int) buffer.readInt(4);
+
+        if (type == FORMAT_DESCRIPTION_EVENT) {
+            // ends with the checksum algorithm and the checksum, which is only set when the algorithm is not 0
+            checksums = packet[1 + length - CHECKSUM_LENGTH - 1] != 0;
+            return ImmutableList.of();
+        }
+
+        buffer = new Buffer(packet, 1 + EVENT_HEADER_LENGTH, 1 + length - (checksums ? CHECKSUM_LENGTH : 0));
+        switch (type) {
+            case TABLE_MAP_EVENT:
+                readTableMap(buffer);
+                return ImmutableList.of();
+            case WRITE_ROWS_EVENT_V1:
+            case WRITE_ROWS_EVENT:
+                return readRows(buffer, RowChange.Type.INSERT, type == WRITE_ROWS_EVENT, timestamp);
+            case UPDATE_ROWS_EVENT_V1:
+            case UPDATE_ROWS_EVENT:
+                return readRows(buffer, RowChange.Type.UPDATE, type == UPDATE_ROWS_EVENT, timestamp);
+            case DELETE_ROWS_EVENT_V1:
+            case DELETE_ROWS_EVENT:
+                return readRows(buffer, RowChange.Type.DELETE, type == DELETE_ROWS_EVENT, timestamp);
+            default:
+                return ImmutableList.of();
+        }
+    }
+
+    private void readTableMap(Buffer buffer)
+    {
+        long tableId = buffer.readInt(6);
+        buffer.skip(2);
+        String database = buffer.readString(buffer.readUnsignedByte());
+        buffer.skip(1);
+        String table = buffer.readString(buffer.readUnsignedByte());
+        buffer.skip(1);
+
+        int columnCount = (int) buffer.readLengthEncodedInt();
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            types[i] = buffer.readUnsignedByte();
+        }
+
+        buffer.readLengthEncodedInt();
+        int[] metadata = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            switch (types[i]) {
+                case TYPE_FLOAT:
+                case TYPE_DOUBLE:
+                case TYPE_TIMESTAMP2:
+                case TYPE_DATETIME2:
+                case TYPE_TIME2:
+                case TYPE_JSON:
+                case TYPE_TINY_BLOB:
+                case TYPE_MEDIUM_BLOB:
+                case TYPE_LONG_BLOB:
+                case TYPE_BLOB:
+                case TYPE_GEOMETRY:
+                    metadata[i] = buffer.readUnsignedByte();
+                    break;
+                case TYPE_VARCHAR:
+                case TYPE_VAR_STRING:
+                case TYPE_BIT:
+                    metadata[i] = (int) buffer.readInt(2);
+                    break;
+                case TYPE_NEWDECIMAL:
+                case TYPE_STRING:
+                case TYPE_ENUM:
+                case TYPE_SET:
+                    metadata[i] = (int) buffer.readIntBigEndian(2);
+                    break;
+                default:
+                    break;
+            }
+        }
+        // the nullability of the columns and the optional metadata are not needed
+        tables.put(tableId, new TableMap(database, table, types, metadata));
+    }
+
+    private List<RowChange> readRows(Buffer buffer, RowChange.Type type, boolean version2, Instant timestamp)
+            throws IOException
+    {
+        long tableId = buffer.readInt(6);
+        TableMap table = tables.get(tableId);
+        if (table == null) {
+            throw new IOException(format("Row event for table %s without a table map event", tableId));
+        }
+        buffer.skip(2);
+        if (version2) {
+            // the length of the extra data includes the length itself
+            buffer.skip((int) buffer.readInt(2) - 2);
+        }
+        int columnCount = (int) buffer.readLengthEncodedInt();
+        BitSet beforeColumns = buffer.readBitmap(columnCount);
+        BitSet afterColumns = (type == RowChange.Type.UPDATE) ? buffer.readBitmap(columnCount) : beforeColumns;
+
+        ImmutableList.Builder<RowChange> changes = ImmutableList.builder();
+        while (buffer.remaining() > 0) {
+            switch (type) {
+                case INSERT:
+                    changes.add(new RowChange(type, table.getDatabase(), table.getTable(), timestamp, Optional.empty(), Optional.of(readRow(buffer, table, afterColumns))));
+                    break;
+                case UPDATE:
+                    Object[] before = readRow(buffer, table, beforeColumns);
+                    Object[] after = readRow(buffer, table, afterColumns);
+                    changes.add(new RowChange(type, table.getDatabase(), table.getTable(), timestamp, Optional.of(before), Optional.of(after)));
+                    break;
+                case DELETE:
+                    changes.add(new RowChange(type, table.getDatabase(), table.getTable(), timestamp, Optional.of(readRow(buffer, table, beforeColumns)), Optional.empty()));
+                    break;
+            }
+        }
+        return changes.build();
+    }
+
+    // columns that are not included in the image are null
+    private static Object[] readRow(Buffer buffer, TableMap table, BitSet columns)
+            throws IOException
+    {
+        BitSet nulls = buffer.readBitmap(columns.cardinality());
+        Object[] row = new Object[table.getColumnCount()];
+        int present = 0;
+        for (int column = 0; column < row.length; column++) {
+            if (!columns.get(column)) {
+                continue;
+            }
+            if (!nulls.get(present++)) {
+                row[column] = readValue(buffer, table.getType(column), table.getMetadata(column));
+            }
+        }
+        return row;
+    }
+
+    static Object decodeValue(byte[] value, int type, int metadata)
+            throws IOException
+    {
+        return readValue(new Buffer(value, 0, value.length), type, metadata);
+    }
+
+    private static Object readValue(Buffer buffer, int type, int metadata)
+            throws IOException
+    {
+        switch (type) {
+            case TYPE_TINY:
+                return (int) (byte) buffer.readUnsignedByte();
+            case TYPE_SHORT:
+                return (int) (short) buffer.readInt(2);
+            case TYPE_INT24:
+                return ((int) buffer.readInt(3) << 8) >> 8;
+            case TYPE_LONG:
+                return (int) buffer.readInt(4);
+            case TYPE_LONGLONG:
+                return buffer.readInt(8);
+            case TYPE_FLOAT:
+                return Float.intBitsToFloat((int) buffer.readInt(4));
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(buffer.readInt(8));
+            case TYPE_YEAR: {
+                int year = buffer.readUnsignedByte();
+                return (year == 0) ? 0 : 1900 + year;
+            }
+            case TYPE_DATE: {
+                int date = (int) buffer.readInt(3);
+                return toLocalDate(date >> 9, (date >> 5) & 0xF, date & 0x1F);
+            }
+            case TYPE_TIMESTAMP:
+                return Instant.ofEpochSecond(buffer.readInt(4));
+            case TYPE_TIMESTAMP2: {
+                long seconds = buffer.readIntBigEndian(4);
+                return Instant.ofEpochSecond(seconds, readFraction(buffer, metadata) * 1000);
+            }
+            case TYPE_DATETIME: {
+                long value = buffer.readInt(8);
+                long date = value / 1_000_000;
+                long time = value % 1_000_000;
+                return toLocalDateTime((int) (date / 10_000), (int) (date / 100 % 100), (int) (date % 100), (int) (time / 10_000), (int) (time / 100 % 100), (int) (time % 100), 0);
+            }
+            case TYPE_DATETIME2: {
+                long value = buffer.readIntBigEndian(5) - 0x80_0000_0000L;
+                long date = value >> 17;
+                long yearMonth = date >> 5;
+                int time = (int) (value & 0x1_FFFF);
+                return toLocalDateTime((int) (yearMonth / 13), (int) (yearMonth % 13), (int) (date & 0x1F), time >> 12, (time >> 6) & 0x3F, time & 0x3F, readFraction(buffer, metadata));
+            }
+            case TYPE_TIME: {
+                int value = ((int) buffer.readInt(3) << 8) >> 8;
+                int time = Math.abs(value);
+                Duration duration = Duration.ofSeconds((time / 10_000) * 3600 + (time / 100 % 100) * 60 + time % 100);
+                return (value < 0) ? duration.negated() : duration;
+            }
+            case TYPE_TIME2:
+                return readTime2(buffer, metadata);
+            case TYPE_NEWDECIMAL:
+                return readDecimal(buffer, metadata >> 8, metadata & 0xFF);
+            case TYPE_VARCHAR:
+            case TYPE_VAR_STRING:
+                return buffer.readString((int) buffer.readInt((metadata < 256) ? 1 : 2));
+            case TYPE_STRING:
+                return readString(buffer, metadata);
+            case TYPE_ENUM:
+                return (int) buffer.readInt(metadata & 0xFF);
+            case TYPE_SET:
+                return buffer.readInt(metadata & 0xFF);
+            case TYPE_BIT:
+                return buffer.readIntBigEndian((metadata >> 8) + (((metadata & 0xFF) != 0) ? 1 : 0));
+            case TYPE_JSON:
+            case TYPE_TINY_BLOB:
+            case TYPE_MEDIUM_BLOB:
+            case TYPE_LONG_BLOB:
+            case TYPE_BLOB:
+            case TYPE_GEOMETRY:
+                return buffer.readBytes((int) buffer.readInt(metadata));
+            default:
+                throw new IOException("Unsupported column type: " + type);
+        }
+    }
+
+    // CHAR, ENUM and SET columns share a type, and the metadata holds the real type and the maximum length
+    private static Object readString(Buffer buffer, int metadata)
+            throws IOException
+    {
+        int type = metadata >> 8;
+        int length = metadata & 0xFF;
+        if (type == TYPE_ENUM || type == TYPE_SET) {
+            return readValue(buffer, type, length);
+        }
+        // the upper bits of lengths over 255 are stored inverted in the type
+        if ((type & 0x30) != 0x30) {
+            length |= ((type & 0x30) ^ 0x30) << 4;
+        }
+        return buffer.readString((int) buffer.readInt((length < 256) ? 1 : 2));
+    }
+
+    // microseconds, stored with one byte per two digits of the fractional seconds precision
+    private static int readFraction(Buffer buffer, int precision)
+    {
+        int length = (precision + 1) / 2;
+        if (length == 0) {
+            return 0;
+        }
+        int fraction = (int) buffer.readIntBigEndian(length);
+        for (int i = length; i < 3; i++) {
+            fraction *= 100;
+        }
+        return fraction;
+    }
+
+    private static Duration readTime2(Buffer buffer, int precision)
+    {
+        // a signed number of microseconds with the hours, minutes and seconds packed in the upper 24 bits
+        long packed;
+        int fractionLength = (precision + 1) / 2;
+        if (fractionLength == 3) {
+            packed = buffer.readIntBigEndian(6) - 0x8000_0000_0000L;
+        }
+        else {
+            long time = buffer.readIntBigEndian(3) - 0x80_0000;
+            long fraction = 0;
+            if (fractionLength > 0) {
+                fraction = buffer.readIntBigEndian(fractionLength);
+                // the fraction of negative values is stored as a negative number
+                if (time < 0 && fraction != 0) {
+                    time++;
+                    fraction -= 1L << (fractionLength * 8);
+                }
+                fraction *= (fractionLength == 1) ? 10_000 : 100;
+            }
+            packed = (time << 24) + fraction;
+        }
+        long value = Math.abs(packed);
+        long time = value >> 24;
+        Duration duration = Duration.ofSeconds(((time >> 12) & 0x3FF) * 3600 + ((time >> 6) & 0x3F) * 60 + (time & 0x3F))
+                .plusNanos((value & 0xFF_FFFF) * 1000);
+        return (packed < 0) ? duration.negated() : duration;
+    }
+
+    // groups of nine digits are stored in four bytes, and the remaining digits in as few bytes as possible
+    private static BigDecimal readDecimal(Buffer buffer, int precision, int scale)
+    {
+        int integral = precision - scale;
+        int length = (integral / 9) * 4 + DIGITS_TO_BYTES[integral % 9] + (scale / 9) * 4 + DIGITS_TO_BYTES[scale % 9];
+        byte[] bytes = buffer.readBytes(length);
+        // the sign is stored in the inverted highest bit, and negative values have all bits inverted
+        boolean negative = (bytes[0] & 0x80) == 0;
+        bytes[0] ^= 0x80;
+        if (negative) {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] ^= 0xFF;
+            }
+        }
+
+        Buffer digits = new Buffer(bytes, 0, bytes.length);
+        StringBuilder value = new StringBuilder(precision + 2);
+        if (negative) {
+            value.append('-');
+        }
+        value.append(digits.readIntBigEndian(DIGITS_TO_BYTES[integral % 9]));
+        for (int i = 0; i < integral / 9; i++) {
+            appendDigits(value, digits.readIntBigEndian(4), 9);
+        }
+        if (scale > 0) {
+            value.append('.');
+            for (int i = 0; i < scale / 9; i++) {
+                appendDigits(value, digits.readIntBigEndian(4), 9);
+            }
+            if (scale % 9 > 0) {
+                appendDigits(value, digits.readIntBigEndian(DIGITS_TO_BYTES[scale % 9]), scale % 9);
+            }
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    private static void appendDigits(StringBuilder builder, long value, int digits)
+    {
+        String string = Long.toString(value);
+        for (int i = string.length(); i < digits; i++) {
+            builder.append('0');
+        }
+        builder.append(string);
+    }
+
+    private static LocalDate toLocalDate(int year, int month, int day)
+    {
+        if (month == 0 || day == 0) {
+            return null;
+        }
+        return LocalDate.of(year, month, day);
+    }
+
+    private static LocalDateTime toLocalDateTime(int year, int month, int day, int hour, int minute, int second, int micros)
+    {
+        LocalDate date = toLocalDate(year, month, day);
+        if (date == null) {
+            return null;
+        }
+        return date.atTime(hour, minute, second, micros * 1000);
+    }
+
+    private byte[] readPacket()
+            throws IOException
+    {
+        byte[] payload = readPacketPart();
+        if (payload.length < MAX_PACKET_LENGTH) {
+            return payload;
+        }
+        // payloads of the maximum length continue in the next packet
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(payload.length * 2);
+        buffer.write(payload);
+        do {
+            payload = readPacketPart();
+            buffer.write(payload);
+        }
+        while (payload.length == MAX_PACKET_LENGTH);
+        return buffer.toByteArray();
+    }
+
+    private byte[] readPacketPart()
+            throws IOException
+    {
+        int length = in.readUnsignedByte() | (in.readUnsignedByte() << 8) | (in.readUnsignedByte() << 16);
+        sequence = (in.readUnsignedByte() + 1) & 0xFF;
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    private void writePacket(byte[] payload)
+            throws IOException
+    {
+        out.write(payload.length & 0xFF);
+        out.write((payload.length >> 8) & 0xFF);
+        out.write((payload.length >> 16) & 0xFF);
+        out.write(sequence);
+        out.write(payload);
+        out.flush();
+        sequence = (sequence + 1) & 0xFF;
+    }
+
+    private static IOException error(byte[] packet)
+    {
+        Buffer buffer = new Buffer(packet, 1, packet.length);
+        int code = (int) buffer.readInt(2);
+        // the SQL state marker and state
+        buffer.skip(6);
+        return new IOException(format("MySQL error %s: %s", code, buffer.readString(buffer.remaining())));
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value, int length)
+    {
+        for (int i = 0; i < length; i++) {
+            out.write((int) (value >> (i * 8)) & 0xFF);
+        }
+    }
+
+    private static void writeNullTerminatedString(ByteArrayOutputStream out, String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.write(bytes, 0, bytes.length);
+        out.write(0);
+    }
+
+    private static class TableMap
+    {
+        private final String database;
+        private final String table;
+        private final int[] types;
+        private final int[] metadata;
+
+        public TableMap(String database, String table, int[] types, int[] metadata)
+        {
+            this.database = requireNonNull(database, "database is null");
+            this.table = requireNonNull(table, "table is null");
+            this.types = requireNonNull(types, "types is null");
+            this.metadata = requireNonNull(metadata, "metadata is null");
+        }
+
+        public String getDatabase()
+        {
+            return database;
+        }
+
+        public String getTable()
+        {
+            return table;
+        }
+
+        public int getColumnCount()
+        {
+            return types.length;
+        }
+
+        public int getType(int column)
+        {
+            return types[column];
+        }
+
+        public int getMetadata(int column)
+        {
+            return metadata[column];
+        }
+    }
+
+    // little endian unless noted, as in the protocol
+    private static class Buffer
+    {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+
+        public Buffer(byte[] bytes, int position, int limit)
+        {
+            this.bytes = requireNonNull(bytes, "bytes is null");
+            this.position = position;
+            this.limit = limit;
+        }
+
+        public int remaining()
+        {
+            return limit - position;
+        }
+
+        public void skip(int length)
+        {
+            checkAvailable(length);
+            position += length;
+        }
+
+        public int readUnsignedByte()
+        {
+            checkAvailable(1);
+            return bytes[position++] & 0xFF;
+        }
+
+        public long readInt(int length)
+        {
+            checkAvailable(length);
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value |= (bytes[position + i] & 0xFFL) << (i * 8);
+            }
+            position += length;
+            return value;
+        }
+
+        public long readIntBigEndian(int length)
+        {
+            checkAvailable(length);
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | (bytes[position + i] & 0xFFL);
+            }
+            position += length;
+            return value;
+        }
+
+        public long readLengthEncodedInt()
+        {
+            int first = readUnsignedByte();
+            switch (first) {
+                case 0xFC:
+                    return readInt(2);
+                case 0xFD:
+                    return readInt(3);
+                case 0xFE:
+                    return readInt(8);
+                default:
+                    return first;
+            }
+        }
+
+        public BitSet readBitmap(int bits)
+        {
+            return BitSet.valueOf(readBytes((bits + 7) / 8));
+        }
+
+        public byte[] readBytes(int length)
+        {
+            checkAvailable(length);
+            byte[] value = new byte[length];
+            System.arraycopy(bytes, position, value, 0, length);
+            position += length;
+            return value;
+        }
+
+        public String readString(int length)
+        {
+            checkAvailable(length);
+            String value = new String(bytes, position, length, UTF_8);
+            position += length;
+            return value;
+        }
+
+        public String readNullTerminatedString()
+        {
+            int end = position;
+            while (end < limit && bytes[end] != 0) {
+                end++;
+            }
+            String value = readString(end - position);
+            skip(1);
+            return value;
+        }
+
+        private void checkAvailable(int length)
+        {
+            if (length < 0 || length > remaining()) {
+                throw new IllegalStateException(format("Cannot read %s bytes at position %s, only %s bytes available", length, position, remaining()));
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Streams;
+import io.airlift.units.Duration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+// The row changes read from the binary log of a server, see AbstractTestingMySqlServer#openBinlogStream.
+// A background thread reads and decodes the events into a bounded queue. When the consumer falls behind and
+// the queue is full, the thread stops reading and the server stops sending, so the reader never buffers more
+// than the queue and the socket buffers hold.
+public class BinlogStream
+        implements Closeable
+{
+    private static final Logger log = Logger.get(BinlogStream.class);
+
+    // compared by identity, the row events are never empty
+    private static final List<RowChange> END = Collections.unmodifiableList(new ArrayList<>());
+
+    private final BinlogReader reader;
+    private final BlockingQueue<List<RowChange>> queue;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile Exception failure;
+
+    private Iterator<RowChange> batch = Collections.emptyIterator();
+    private boolean finished;
+
+    private BinlogStream(BinlogReader reader, int capacity)
+    {
+        this.reader = requireNonNull(reader, "reader is null");
+        checkArgument(capacity > 0, "capacity must be positive");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = daemonThreadsNamed("testing-mysql-server-binlog-%s").newThread(this::read);
+    }
+
+    // the capacity is the number of row events, each with the rows changed by one statement, that are read ahead
+    static BinlogStream open(int port, String file, long position, int capacity)
+            throws IOException
+    {
+        // the server disconnects other replicas with the same id
+        int serverId = ThreadLocalRandom.current().nextInt(1 << 20, 1 << 30);
+        BinlogStream stream = new BinlogStream(BinlogReader.open(port, file, position, serverId), capacity);
+        stream.thread.start();
+        return stream;
+    }
+
+    // waits up to the timeout for the next change, returns empty on timeout or when the stream ended
+    public synchronized Optional<RowChange> poll(Duration timeout)
+            throws IOException, InterruptedException
+    {
+        return Optional.ofNullable(take(timeout.roundTo(NANOSECONDS)));
+    }
+
+    // blocks for each change until the stream is closed or the server shuts down, failures are thrown as UncheckedIOException
+    public Stream<RowChange> stream()
+    {
+        Iterator<RowChange> iterator = new AbstractIterator<RowChange>()
+        {
+            @Override
+            protected RowChange computeNext()
+            {
+                try {
+                    RowChange change;
+                    synchronized (BinlogStream.this) {
+                        change = take(-1);
+                    }
+                    return (change == null) ? endOfData() : change;
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        return Streams.stream(iterator);
+    }
+
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        closed = true;
+        thread.interrupt();
+        reader.close();
+    }
+
+    // a negative timeout waits forever
+    private RowChange take(long timeoutNanos)
+            throws IOException, InterruptedException
+    {
+        while (!batch.hasNext()) {
+            if (finished) {
+                return null;
+            }
+            List<RowChange> changes = (timeoutNanos < 0) ? queue.take() : queue.poll(timeoutNanos, NANOSECONDS);
+            if (changes == null) {
+                return null;
+            }
+            if (changes == END) {
+                finished = true;
+                if (failure != null) {
+                    throw new IOException("Failed to read the binary log", failure);
+                }
+                return null;
+            }
+            batch = changes.iterator();
+        }
+        return batch.next();
+    }
+
+    private void read()
+    {
+        try {
+            while (!closed) {
+                Optional<List<RowChange>> changes = reader.readRowChanges();
+                if (!changes.isPresent()) {
+                    break;
+                }
+                queue.put(changes.get());
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            if (!closed) {
+                log.warn(e, "Failed to read the binary log");
+                failure = e;
+            }
+        }
+        catch (InterruptedException e) {
+            // closed while the queue was full
+        }
+        finally {
+            try {
+                reader.close();
+            }
+            catch (IOException e) {
+                log.warn(e, "Failed to close the binary log connection");
+            }
+            finish();
+        }
+    }
+
+    private void finish()
+    {
+        if (!closed) {
+            try {
+                queue.put(END);
+                return;
+            }
+            catch (InterruptedException e) {
+                // closed while the queue was full
+            }
+        }
+        // the remaining changes are dropped when the stream is closed
+        queue.clear();
+        queue.offer(END);
+    }
+}
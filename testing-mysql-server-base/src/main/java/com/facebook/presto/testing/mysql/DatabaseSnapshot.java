@@ -0,0 +1,427 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.google.common.collect.Sets.difference;
+import static com.google.common.collect.Sets.intersection;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+
+// Copies every table of a database into a shadow schema and installs triggers that record which
+// tables are modified afterwards. A restore then only has to reload the tables that changed.
+// Changes that fire no trigger (TRUNCATE, ALTER TABLE, or dropping and recreating a table) are
+// detected by comparing the table definition, the InnoDB table id (or a checksum for other
+// engines) and the presence of the triggers against the values recorded at snapshot time.
+final class DatabaseSnapshot
+{
+    private static final Logger log = Logger.get(DatabaseSnapshot.class);
+
+    private static final String CHANGES_TABLE = "_snapshot_changes";
+    private static final String TRIGGER_PREFIX = "_snapshot_";
+    private static final List<String> TRIGGER_EVENTS = ImmutableList.of("INSERT", "UPDATE", "DELETE");
+    private static final Pattern AUTO_INCREMENT = Pattern.compile(" AUTO_INCREMENT=\\d+");
+
+    private final String database;
+    private final String shadowDatabase;
+    private final Map<String, SnapshotTable> tables;
+    private final Optional<String> innodbTablesView;
+
+    // table id or checksum of each table, updated whenever a restore rewrites the table
+    private final Map<String, String> tableVersions;
+
+    private DatabaseSnapshot(String database, String shadowDatabase, Map<String, SnapshotTable> tables, Optional<String> innodbTablesView, Map<String, String> tableVersions)
+    {
+        this.database = requireNonNull(database, "database is null");
+        this.shadowDatabase = requireNonNull(shadowDatabase, "shadowDatabase is null");
+        this.tables = ImmutableMap.copyOf(requireNonNull(tables, "tables is null"));
+        this.innodbTablesView = requireNonNull(innodbTablesView, "innodbTablesView is null");
+        this.tableVersions = new HashMap<>(requireNonNull(tableVersions, "tableVersions is null"));
+    }
+
+    public static DatabaseSnapshot create(Connection connection, String database)
+            throws SQLException
+    {
+        String shadowDatabase = shadowDatabaseName(database);
+
+        try (Statement statement = connection.createStatement()) {
+            dropTriggers(connection, statement, database);
+            execute(statement, format("DROP DATABASE IF EXISTS %s", quote(shadowDatabase)));
+            execute(statement, format("CREATE DATABASE %s", quote(shadowDatabase)));
+            execute(statement, format("CREATE TABLE %s.%s (table_name varchar(64) PRIMARY KEY)", quote(shadowDatabase), quote(CHANGES_TABLE)));
+
+            ImmutableMap.Builder<String, SnapshotTable> tables = ImmutableMap.builder();
+            int index = 0;
+            for (String table : listTables(connection, database)) {
+                SnapshotTable snapshotTable = new SnapshotTable(
+                        table,
+                        TRIGGER_PREFIX + index,
+                        showCreateTable(statement, database, table),
+                        listInsertableColumns(connection, database, table));
+                index++;
+
+                execute(statement, format("CREATE TABLE %s.%s LIKE %s.%s", quote(shadowDatabase), quote(table), quote(database), quote(table)));
+                copyRows(statement, database, shadowDatabase, snapshotTable);
+                createTriggers(statement, database, shadowDatabase, snapshotTable);
+                tables.put(table, snapshotTable);
+            }
+
+            Optional<String> innodbTablesView = findInnodbTablesView(connection);
+            Map<String, SnapshotTable> snapshotTables = tables.build();
+            Map<String, String> tableVersions = readTableVersions(connection, statement, database, innodbTablesView, snapshotTables.keySet());
+            return new DatabaseSnapshot(database, shadowDatabase, snapshotTables, innodbTablesView, tableVersions);
+        }
+    }
+
+    public synchronized void restore(Connection connection)
+            throws SQLException
+    {
+        connection.setCatalog(database);
+        try (Statement statement = connection.createStatement()) {
+            execute(statement, "SET foreign_key_checks = 0");
+            try {
+                Set<String> currentTables = listTables(connection, database);
+
+                for (String table : difference(currentTables, tables.keySet())) {
+                    execute(statement, format("DROP TABLE %s.%s", quote(database), quote(table)));
+                }
+
+                Set<String> reloadedTables = new HashSet<>();
+                for (String table : difference(tables.keySet(), currentTables)) {
+                    recreateTable(statement, tables.get(table));
+                    reloadedTables.add(table);
+                }
+
+                // tables changed without firing the triggers are recreated from the snapshot definition
+                Set<String> retainedTables = intersection(tables.keySet(), currentTables).immutableCopy();
+                Set<String> triggeredTables = listTriggeredTables(connection, database);
+                Map<String, String> currentVersions = readTableVersions(connection, statement, database, innodbTablesView, retainedTables);
+                for (String table : retainedTables) {
+                    SnapshotTable snapshotTable = tables.get(table);
+                    if (triggeredTables.contains(table) &&
+                            Objects.equals(currentVersions.get(table), tableVersions.get(table)) &&
+                            withoutAutoIncrement(showCreateTable(statement, database, table)).equals(withoutAutoIncrement(snapshotTable.getCreateStatement()))) {
+                        continue;
+                    }
+                    execute(statement, format("DROP TABLE %s.%s", quote(database), quote(table)));
+                    recreateTable(statement, snapshotTable);
+                    reloadedTables.add(table);
+                }
+
+                for (String table : listChangedTables(statement)) {
+                    if (!retainedTables.contains(table) || reloadedTables.contains(table)) {
+                        continue;
+                    }
+                    execute(statement, format("TRUNCATE TABLE %s.%s", quote(database), quote(table)));
+                    copyRows(statement, shadowDatabase, database, tables.get(table));
+                    reloadedTables.add(table);
+                }
+
+                // truncating or recreating a table assigns it a new table id
+                tableVersions.putAll(readTableVersions(connection, statement, database, innodbTablesView, reloadedTables));
+
+                // reloading the rows fired the triggers again
+                execute(statement, format("DELETE FROM %s.%s", quote(shadowDatabase), quote(CHANGES_TABLE)));
+            }
+            finally {
+                execute(statement, "SET foreign_key_checks = 1");
+            }
+        }
+    }
+
+    private void recreateTable(Statement statement, SnapshotTable table)
+            throws SQLException
+    {
+        // the create statement is not qualified, so this relies on the connection catalog being the database
+        execute(statement, table.getCreateStatement());
+        copyRows(statement, shadowDatabase, database, table);
+        createTriggers(statement, database, shadowDatabase, table);
+    }
+
+    public void drop(Connection connection)
+            throws SQLException
+    {
+        try (Statement statement = connection.createStatement()) {
+            dropTriggers(connection, statement, database);
+            execute(statement, format("DROP DATABASE IF EXISTS %s", quote(shadowDatabase)));
+        }
+    }
+
+    private Set<String> listChangedTables(Statement statement)
+            throws SQLException
+    {
+        ImmutableSet.Builder<String> changedTables = ImmutableSet.builder();
+        try (ResultSet resultSet = statement.executeQuery(format("SELECT table_name FROM %s.%s", quote(shadowDatabase), quote(CHANGES_TABLE)))) {
+            while (resultSet.next()) {
+                changedTables.add(resultSet.getString(1));
+            }
+        }
+        return changedTables.build();
+    }
+
+    private static void copyRows(Statement statement, String sourceDatabase, String targetDatabase, SnapshotTable table)
+            throws SQLException
+    {
+        String columns = Joiner.on(", ").join(table.getColumns().stream()
+                .map(DatabaseSnapshot::quote)
+                .iterator());
+        execute(statement, format(
+                "INSERT INTO %s.%s (%s) SELECT %s FROM %s.%s",
+                quote(targetDatabase),
+                quote(table.getName()),
+                columns,
+                columns,
+                quote(sourceDatabase),
+                quote(table.getName())));
+    }
+
+    private static void createTriggers(Statement statement, String database, String shadowDatabase, SnapshotTable table)
+            throws SQLException
+    {
+        for (String event : TRIGGER_EVENTS) {
+            execute(statement, format(
+                    "CREATE TRIGGER %s.%s AFTER %s ON %s.%s FOR EACH ROW INSERT IGNORE INTO %s.%s VALUES ('%s')",
+                    quote(database),
+                    quote(table.getTriggerPrefix() + "_" + event.toLowerCase(ENGLISH)),
+                    event,
+                    quote(database),
+                    quote(table.getName()),
+                    quote(shadowDatabase),
+                    quote(CHANGES_TABLE),
+                    table.getName().replace("'", "''")));
+        }
+    }
+
+    private static void dropTriggers(Connection connection, Statement statement, String database)
+            throws SQLException
+    {
+        ImmutableList.Builder<String> triggers = ImmutableList.builder();
+        try (PreparedStatement query = connection.prepareStatement("" +
+                "SELECT trigger_name FROM information_schema.triggers " +
+                "WHERE trigger_schema = ? AND trigger_name LIKE ?")) {
+            query.setString(1, database);
+            query.setString(2, TRIGGER_PREFIX.replace("_", "\\_") + "%");
+            try (ResultSet resultSet = query.executeQuery()) {
+                while (resultSet.next()) {
+                    triggers.add(resultSet.getString(1));
+                }
+            }
+        }
+        for (String trigger : triggers.build()) {
+            execute(statement, format("DROP TRIGGER %s.%s", quote(database), quote(trigger)));
+        }
+    }
+
+    // tables that still have all of their triggers, which are lost when a table is dropped and recreated
+    private static Set<String> listTriggeredTables(Connection connection, String database)
+            throws SQLException
+    {
+        ImmutableSet.Builder<String> tables = ImmutableSet.builder();
+        try (PreparedStatement query = connection.prepareStatement("" +
+                "SELECT event_object_table FROM information_schema.triggers " +
+                "WHERE trigger_schema = ? AND trigger_name LIKE ? " +
+                "GROUP BY event_object_table " +
+                "HAVING count(*) = ?")) {
+            query.setString(1, database);
+            query.setString(2, TRIGGER_PREFIX.replace("_", "\\_") + "%");
+            query.setInt(3, TRIGGER_EVENTS.size());
+            try (ResultSet resultSet = query.executeQuery()) {
+                while (resultSet.next()) {
+                    tables.add(resultSet.getString(1));
+                }
+            }
+        }
+        return tables.build();
+    }
+
+    // the InnoDB dictionary view is INNODB_TABLES in MySQL 8 and INNODB_SYS_TABLES in MySQL 5.7 and MariaDB
+    private static Optional<String> findInnodbTablesView(Connection connection)
+            throws SQLException
+    {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("" +
+                        "SELECT table_name FROM information_schema.tables " +
+                        "WHERE table_schema = 'information_schema' AND upper(table_name) IN ('INNODB_TABLES', 'INNODB_SYS_TABLES')")) {
+            if (resultSet.next()) {
+                return Optional.of(resultSet.getString(1));
+            }
+            return Optional.empty();
+        }
+    }
+
+    // TRUNCATE and table rebuilds assign a new InnoDB table id; tables without one fall back to a checksum of their rows
+    private static Map<String, String> readTableVersions(Connection connection, Statement statement, String database, Optional<String> innodbTablesView, Set<String> tables)
+            throws SQLException
+    {
+        Map<String, String> versions = new HashMap<>();
+        if (tables.isEmpty()) {
+            return versions;
+        }
+
+        if (innodbTablesView.isPresent()) {
+            String prefix = database + "/";
+            try (PreparedStatement query = connection.prepareStatement(format(
+                    "SELECT name, table_id FROM information_schema.%s WHERE name LIKE ?",
+                    quote(innodbTablesView.get())))) {
+                query.setString(1, prefix.replace("\\", "\\\\").replace("_", "\\_").replace("%", "\\%") + "%");
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        String table = resultSet.getString(1).substring(prefix.length());
+                        if (tables.contains(table)) {
+                            versions.put(table, "id:" + resultSet.getLong(2));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (String table : difference(tables, versions.keySet())) {
+            try (ResultSet resultSet = statement.executeQuery(format("CHECKSUM TABLE %s.%s", quote(database), quote(table)))) {
+                if (resultSet.next()) {
+                    versions.put(table, "checksum:" + resultSet.getString(2));
+                }
+            }
+        }
+        return versions;
+    }
+
+    private static Set<String> listTables(Connection connection, String database)
+            throws SQLException
+    {
+        ImmutableSet.Builder<String> tables = ImmutableSet.builder();
+        try (PreparedStatement query = connection.prepareStatement("" +
+                "SELECT table_name FROM information_schema.tables " +
+                "WHERE table_schema = ? AND table_type = 'BASE TABLE' " +
+                "ORDER BY table_name")) {
+            query.setString(1, database);
+            try (ResultSet resultSet = query.executeQuery()) {
+                while (resultSet.next()) {
+                    tables.add(resultSet.getString(1));
+                }
+            }
+        }
+        return tables.build();
+    }
+
+    private static List<String> listInsertableColumns(Connection connection, String database, String table)
+            throws SQLException
+    {
+        ImmutableList.Builder<String> columns = ImmutableList.builder();
+        try (PreparedStatement query = connection.prepareStatement("" +
+                "SELECT column_name FROM information_schema.columns " +
+                "WHERE table_schema = ? AND table_name = ? AND extra NOT IN ('VIRTUAL GENERATED', 'STORED GENERATED') " +
+                "ORDER BY ordinal_position")) {
+            query.setString(1, database);
+            query.setString(2, table);
+            try (ResultSet resultSet = query.executeQuery()) {
+                while (resultSet.next()) {
+                    columns.add(resultSet.getString(1));
+                }
+            }
+        }
+        return columns.build();
+    }
+
+    private static String showCreateTable(Statement statement, String database, String table)
+            throws SQLException
+    {
+        try (ResultSet resultSet = statement.executeQuery(format("SHOW CREATE TABLE %s.%s", quote(database), quote(table)))) {
+            if (!resultSet.next()) {
+                throw new SQLException("table not found: " + table);
+            }
+            return resultSet.getString(2);
+        }
+    }
+
+    private static String withoutAutoIncrement(String createStatement)
+    {
+        // the next auto increment value is part of SHOW CREATE TABLE but is not part of the definition
+        return AUTO_INCREMENT.matcher(createStatement).replaceAll("");
+    }
+
+    private static String shadowDatabaseName(String database)
+    {
+        String name = "_snapshot_" + database;
+        // identifiers are limited to 64 characters
+        return name.length() <= 64 ? name : name.substring(0, 56) + Integer.toHexString(database.hashCode());
+    }
+
+    private static String quote(String identifier)
+    {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    private static void execute(Statement statement, String sql)
+            throws SQLException
+    {
+        log.debug("Executing: %s", sql);
+        statement.execute(sql);
+    }
+
+    private static class SnapshotTable
+    {
+        private final String name;
+        private final String triggerPrefix;
+        private final String createStatement;
+        private final List<String> columns;
+
+        public SnapshotTable(String name, String triggerPrefix, String createStatement, List<String> columns)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.triggerPrefix = requireNonNull(triggerPrefix, "triggerPrefix is null");
+            this.createStatement = requireNonNull(createStatement, "createStatement is null");
+            this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getTriggerPrefix()
+        {
+            return triggerPrefix;
+        }
+
+        public String getCreateStatement()
+        {
+            return createStatement;
+        }
+
+        public List<String> getColumns()
+        {
+            return columns;
+        }
+    }
+}
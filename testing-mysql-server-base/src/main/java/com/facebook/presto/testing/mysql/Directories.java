@@ -0,0 +1,171 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Command;
+import io.airlift.command.CommandFailedException;
+import io.airlift.units.Duration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.google.common.base.StandardSystemProperty.OS_NAME;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.walkFileTree;
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+final class Directories
+{
+    private static final Logger log = Logger.get(Directories.class);
+
+    private static final ExecutorService COPY_EXECUTOR = newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            daemonThreadsNamed("testing-mysql-server-copy-%s"));
+
+    private Directories() {}
+
+    // Hard links are not an option: InnoDB updates its files in place, which would corrupt the source.
+    // Copy-on-write clones are used where cp supports them, otherwise files are copied in parallel.
+    public static void cloneDirectory(Path source, Path target, Executor executor, Duration timeout)
+            throws IOException
+    {
+        List<String> command = cloneCommand(source, target);
+        if (!command.isEmpty()) {
+            try {
+                new Command(command.toArray(new String[0]))
+                        .setTimeLimit(timeout)
+                        .execute(executor);
+                return;
+            }
+            catch (CommandFailedException e) {
+                log.debug(e, "Falling back to copying %s", source);
+                if (exists(target)) {
+                    deleteRecursively(target, ALLOW_INSECURE);
+                }
+            }
+        }
+        copyDirectory(source, target);
+    }
+
+    public static void copyDirectory(Path source, Path target)
+            throws IOException
+    {
+        List<Future<?>> futures = new ArrayList<>();
+        walkFileTree(source, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                createDirectories(target.resolve(source.relativize(directory)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+            {
+                Path destination = target.resolve(source.relativize(file));
+                futures.add(COPY_EXECUTOR.submit(() -> {
+                    try {
+                        copy(file, destination, COPY_ATTRIBUTES);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while copying " + source, e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                throwIfInstanceOf(cause, IOException.class);
+                throwIfUnchecked(cause);
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    // files that are removed while walking the directory are skipped
+    public static long directorySize(Path directory)
+            throws IOException
+    {
+        AtomicLong size = new AtomicLong();
+        walkFileTree(directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+            {
+                size.addAndGet(attributes.size());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e)
+                    throws IOException
+            {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return size.get();
+    }
+
+    private static List<String> cloneCommand(Path source, Path target)
+    {
+        String os = OS_NAME.value();
+        if (os.equals("Linux")) {
+            return ImmutableList.of("cp", "-R", "--reflink=auto", source.toString(), target.toString());
+        }
+        if (os.equals("Mac OS X")) {
+            return ImmutableList.of("cp", "-c", "-R", source.toString(), target.toString());
+        }
+        return ImmutableList.of();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+final class DirectoryCache
+{
+    private static final Logger log = Logger.get(DirectoryCache.class);
+
+    // one monitor per lock file, so populating one key does not block the others
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path cacheDirectory;
+
+    public DirectoryCache(Path cacheDirectory)
+    {
+        this.cacheDirectory = requireNonNull(cacheDirectory, "cacheDirectory is null");
+    }
+
+    public Path getDirectory(String key, DirectoryLoader loader)
+            throws IOException
+    {
+        Path directory = cacheDirectory.resolve(key);
+        if (isDirectory(directory)) {
+            return directory;
+        }
+
+        createDirectories(cacheDirectory);
+
+        // file locks are held by the JVM, so threads in this JVM must be serialized separately, per key
+        Path lockFile = cacheDirectory.resolve(key + ".lock").toAbsolutePath().normalize();
+        synchronized (LOCKS.computeIfAbsent(lockFile, ignored -> new Object())) {
+            try (FileChannel channel = FileChannel.open(lockFile, CREATE, WRITE);
+                    FileLock ignored = channel.lock()) {
+                if (isDirectory(directory)) {
+                    return directory;
+                }
+
+                // populate a staging directory and rename it, so a visible entry is always complete
+                log.info("Populating %s", directory);
+                Path staging = createTempDirectory(cacheDirectory, key + ".staging-");
+                try {
+                    loader.load(staging);
+                    move(staging, directory, ATOMIC_MOVE);
+                }
+                catch (IOException | RuntimeException e) {
+                    try {
+                        deleteRecursively(staging, ALLOW_INSECURE);
+                    }
+                    catch (IOException ex) {
+                        e.addSuppressed(ex);
+                    }
+                    throw e;
+                }
+            }
+        }
+        return directory;
+    }
+
+    public interface DirectoryLoader
+    {
+        void load(Path directory)
+                throws IOException;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.facebook.airlift.concurrent.Threads.threadsNamed;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+final class DirectoryCleaner
+{
+    private static final Logger log = Logger.get(DirectoryCleaner.class);
+
+    // non-daemon, so pending deletes finish before the JVM exits, but the thread exits when idle
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+            0,
+            1,
+            1,
+            SECONDS,
+            new LinkedBlockingQueue<>(),
+            threadsNamed("testing-mysql-server-cleaner-%s"));
+
+    private DirectoryCleaner() {}
+
+    public static void deleteAsync(Path directory)
+    {
+        // rename first, so the original path can be reused immediately
+        Path target = directory.resolveSibling(directory.getFileName() + ".deleted-" + System.nanoTime());
+        try {
+            move(directory, target, ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            log.debug(e, "Failed to rename %s", directory);
+            target = directory;
+        }
+
+        Path toDelete = target;
+        EXECUTOR.execute(() -> delete(toDelete));
+    }
+
+    public static void delete(Path directory)
+    {
+        try {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+        catch (IOException e) {
+            log.warn(e, "Failed to delete %s", directory);
+        }
+    }
+}
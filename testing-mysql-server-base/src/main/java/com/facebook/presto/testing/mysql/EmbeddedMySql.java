@@ -13,15 +13,59 @@
  */
 package com.facebook.presto.testing.mysql;
 
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
 import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+// the methods other than getPort and getMySqlDatabase have defaults for implementations outside this project
 public interface EmbeddedMySql
         extends Closeable
 {
     int getPort();
 
+    default MySqlOptions getMySqlOptions()
+    {
+        return MySqlOptions.builder().build();
+    }
+
+    default StartupStats getStartupStats()
+    {
+        Duration zero = new Duration(0, NANOSECONDS);
+        return new StartupStats(zero, zero, zero, zero, zero);
+    }
+
+    // JDBC URLs must add the socketFactory parameter
+    default boolean isUsingUnixSocket()
+    {
+        return false;
+    }
+
+    // resident set size of mysqld, if the platform reports it
+    default Optional<DataSize> getResidentMemory()
+    {
+        return Optional.empty();
+    }
+
+    default RuntimeStats getRuntimeStats()
+            throws SQLException
+    {
+        throw new UnsupportedOperationException("Runtime stats are not supported by " + getClass().getName());
+    }
+
+    // samples recorded at the runtime stats interval, oldest first
+    default List<RuntimeStats> getRuntimeStatsHistory()
+    {
+        return ImmutableList.of();
+    }
+
     Connection getMySqlDatabase()
             throws SQLException;
 }
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import javax.sql.DataSource;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+public class MySqlDatabaseLease
+        implements Closeable
+{
+    private final MySqlServerPool pool;
+    private final AbstractTestingMySqlServer server;
+    private final String database;
+    private final String user;
+    private final String password;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    MySqlDatabaseLease(MySqlServerPool pool, AbstractTestingMySqlServer server, String database, String user, String password)
+    {
+        this.pool = requireNonNull(pool, "pool is null");
+        this.server = requireNonNull(server, "server is null");
+        this.database = requireNonNull(database, "database is null");
+        this.user = requireNonNull(user, "user is null");
+        this.password = requireNonNull(password, "password is null");
+    }
+
+    public AbstractTestingMySqlServer getServer()
+    {
+        return server;
+    }
+
+    public String getDatabase()
+    {
+        return database;
+    }
+
+    public String getUser()
+    {
+        return user;
+    }
+
+    public String getPassword()
+    {
+        return password;
+    }
+
+    public int getPort()
+    {
+        return server.getPort();
+    }
+
+    public String getJdbcUrl()
+    {
+        return server.getJdbcUrl(database, user, password);
+    }
+
+    public DataSource getDataSource()
+    {
+        return server.getDataSource(database, user, password);
+    }
+
+    @Override
+    public void close()
+    {
+        if (!closed.getAndSet(true)) {
+            server.closeDataSource(database, user, password);
+            pool.release(this);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("database", database)
+                .add("user", user)
+                .add("port", getPort())
+                .toString();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Data that is loaded once per host and cached as a data directory image.
+public interface MySqlDataset
+{
+    // identifies the cached image, so it must change whenever the loaded data changes (e.g. "tpch-sf0.01-v1")
+    String getName();
+
+    // called with a root connection; TableLoader can be used for bulk loading
+    void load(Connection connection)
+            throws SQLException;
+}
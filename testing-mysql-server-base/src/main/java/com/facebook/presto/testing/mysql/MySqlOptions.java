@@ -13,9 +13,19 @@
  */
 package com.facebook.presto.testing.mysql;
 
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class MySqlOptions
@@ -23,12 +33,78 @@ public class MySqlOptions
     private final Duration startupWait;
     private final Duration shutdownWait;
     private final Duration commandTimeout;
+    private final Path cacheDirectory;
+    private final boolean initializeFromTemplate;
+    private final Optional<Path> dataDirectoryRoot;
+    private final boolean preferSharedMemory;
+    private final DataSize minFreeSpace;
+    private final boolean logStartupStats;
+    private final Optional<Path> serverDirectory;
+    private final ShutdownMode shutdownMode;
+    private final DirectoryCleanup directoryCleanup;
+    private final Optional<MySqlDataset> dataset;
+    private final int connectionPoolSize;
+    private final boolean validateConnections;
+    private final int preparedStatementCacheSize;
+    private final boolean useUnixSocket;
+    private final MySqlProfile profile;
+    private final List<String> serverArguments;
+    private final Optional<Duration> runtimeStatsInterval;
+    private final boolean shared;
+    private final Duration sharedLeaseTimeout;
+    private final boolean rowBinaryLog;
+    private final boolean statementDigests;
 
-    private MySqlOptions(Duration startupWait, Duration shutdownWait, Duration commandTimeout)
+    private MySqlOptions(
+            Duration startupWait,
+            Duration shutdownWait,
+            Duration commandTimeout,
+            Path cacheDirectory,
+            boolean initializeFromTemplate,
+            Optional<Path> dataDirectoryRoot,
+            boolean preferSharedMemory,
+            DataSize minFreeSpace,
+            boolean logStartupStats,
+            Optional<Path> serverDirectory,
+            ShutdownMode shutdownMode,
+            DirectoryCleanup directoryCleanup,
+            Optional<MySqlDataset> dataset,
+            int connectionPoolSize,
+            boolean validateConnections,
+            int preparedStatementCacheSize,
+            boolean useUnixSocket,
+            MySqlProfile profile,
+            List<String> serverArguments,
+            Optional<Duration> runtimeStatsInterval,
+            boolean shared,
+            Duration sharedLeaseTimeout,
+            boolean rowBinaryLog,
+            boolean statementDigests)
     {
         this.startupWait = requireNonNull(startupWait, "startupWait is null");
         this.shutdownWait = requireNonNull(shutdownWait, "shutdownWait is null");
         this.commandTimeout = requireNonNull(commandTimeout, "commandTimeout is null");
+        this.cacheDirectory = requireNonNull(cacheDirectory, "cacheDirectory is null");
+        this.initializeFromTemplate = initializeFromTemplate;
+        this.dataDirectoryRoot = requireNonNull(dataDirectoryRoot, "dataDirectoryRoot is null");
+        this.preferSharedMemory = preferSharedMemory;
+        this.minFreeSpace = requireNonNull(minFreeSpace, "minFreeSpace is null");
+        this.logStartupStats = logStartupStats;
+        this.serverDirectory = requireNonNull(serverDirectory, "serverDirectory is null");
+        this.shutdownMode = requireNonNull(shutdownMode, "shutdownMode is null");
+        this.directoryCleanup = requireNonNull(directoryCleanup, "directoryCleanup is null");
+        this.dataset = requireNonNull(dataset, "dataset is null");
+        this.connectionPoolSize = connectionPoolSize;
+        this.validateConnections = validateConnections;
+        this.preparedStatementCacheSize = preparedStatementCacheSize;
+        this.useUnixSocket = useUnixSocket;
+        this.profile = requireNonNull(profile, "profile is null");
+        this.serverArguments = ImmutableList.copyOf(requireNonNull(serverArguments, "serverArguments is null"));
+        this.runtimeStatsInterval = requireNonNull(runtimeStatsInterval, "runtimeStatsInterval is null");
+        this.shared = shared;
+        this.sharedLeaseTimeout = requireNonNull(sharedLeaseTimeout, "sharedLeaseTimeout is null");
+        this.rowBinaryLog = rowBinaryLog;
+        this.statementDigests = statementDigests;
     }
 
     public Duration getStartupWait()
@@ -46,16 +122,177 @@ public class MySqlOptions
         return commandTimeout;
     }
 
+    public Path getCacheDirectory()
+    {
+        return cacheDirectory;
+    }
+
+    public boolean isInitializeFromTemplate()
+    {
+        return initializeFromTemplate;
+    }
+
+    public Optional<Path> getDataDirectoryRoot()
+    {
+        return dataDirectoryRoot;
+    }
+
+    public boolean isPreferSharedMemory()
+    {
+        return preferSharedMemory;
+    }
+
+    public DataSize getMinFreeSpace()
+    {
+        return minFreeSpace;
+    }
+
+    public boolean isLogStartupStats()
+    {
+        return logStartupStats;
+    }
+
+    public Optional<Path> getServerDirectory()
+    {
+        return serverDirectory;
+    }
+
+    public ShutdownMode getShutdownMode()
+    {
+        return shutdownMode;
+    }
+
+    public DirectoryCleanup getDirectoryCleanup()
+    {
+        return directoryCleanup;
+    }
+
+    public Optional<MySqlDataset> getDataset()
+    {
+        return dataset;
+    }
+
+    public int getConnectionPoolSize()
+    {
+        return connectionPoolSize;
+    }
+
+    public boolean isValidateConnections()
+    {
+        return validateConnections;
+    }
+
+    public int getPreparedStatementCacheSize()
+    {
+        return preparedStatementCacheSize;
+    }
+
+    public boolean isUseUnixSocket()
+    {
+        return useUnixSocket;
+    }
+
+    public MySqlProfile getProfile()
+    {
+        return profile;
+    }
+
+    public List<String> getServerArguments()
+    {
+        return serverArguments;
+    }
+
+    public Optional<Duration> getRuntimeStatsInterval()
+    {
+        return runtimeStatsInterval;
+    }
+
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+    public Duration getSharedLeaseTimeout()
+    {
+        return sharedLeaseTimeout;
+    }
+
+    public boolean isRowBinaryLog()
+    {
+        return rowBinaryLog;
+    }
+
+    public boolean isStatementDigests()
+    {
+        return statementDigests;
+    }
+
     public static Builder builder()
     {
         return new Builder();
     }
 
+    public Builder toBuilder()
+    {
+        return new Builder(this);
+    }
+
     public static class Builder
     {
         private Duration startupWait = new Duration(10, SECONDS);
         private Duration shutdownWait = new Duration(10, SECONDS);
         private Duration commandTimeout = new Duration(90, SECONDS);
+        private Path cacheDirectory = Paths.get(System.getProperty("user.home"), ".cache", "testing-mysql-server");
+        private boolean initializeFromTemplate = true;
+        private Optional<Path> dataDirectoryRoot = Optional.empty();
+        private boolean preferSharedMemory;
+        private DataSize minFreeSpace = new DataSize(512, MEGABYTE);
+        private boolean logStartupStats;
+        private Optional<Path> serverDirectory = Optional.empty();
+        private ShutdownMode shutdownMode = ShutdownMode.KILL;
+        private DirectoryCleanup directoryCleanup = DirectoryCleanup.DELETE;
+        private Optional<MySqlDataset> dataset = Optional.empty();
+        private int connectionPoolSize = 8;
+        private boolean validateConnections = true;
+        private int preparedStatementCacheSize;
+        private boolean useUnixSocket;
+        private MySqlProfile profile = MySqlProfile.DEFAULT;
+        private List<String> serverArguments = ImmutableList.of();
+        private Optional<Duration> runtimeStatsInterval = Optional.empty();
+        private boolean shared;
+        private Duration sharedLeaseTimeout = new Duration(1, MINUTES);
+        private boolean rowBinaryLog;
+        private boolean statementDigests;
+
+        public Builder() {}
+
+        private Builder(MySqlOptions options)
+        {
+            this.startupWait = options.startupWait;
+            this.shutdownWait = options.shutdownWait;
+            this.commandTimeout = options.commandTimeout;
+            this.cacheDirectory = options.cacheDirectory;
+            this.initializeFromTemplate = options.initializeFromTemplate;
+            this.dataDirectoryRoot = options.dataDirectoryRoot;
+            this.preferSharedMemory = options.preferSharedMemory;
+            this.minFreeSpace = options.minFreeSpace;
+            this.logStartupStats = options.logStartupStats;
+            this.serverDirectory = options.serverDirectory;
+            this.shutdownMode = options.shutdownMode;
+            this.directoryCleanup = options.directoryCleanup;
+            this.dataset = options.dataset;
+            this.connectionPoolSize = options.connectionPoolSize;
+            this.validateConnections = options.validateConnections;
+            this.preparedStatementCacheSize = options.preparedStatementCacheSize;
+            this.useUnixSocket = options.useUnixSocket;
+            this.profile = options.profile;
+            this.serverArguments = options.serverArguments;
+            this.runtimeStatsInterval = options.runtimeStatsInterval;
+            this.shared = options.shared;
+            this.sharedLeaseTimeout = options.sharedLeaseTimeout;
+            this.rowBinaryLog = options.rowBinaryLog;
+            this.statementDigests = options.statementDigests;
+        }
 
         public Builder setStartupWait(Duration startupWait)
         {
@@ -75,9 +312,174 @@ public class MySqlOptions
             return this;
         }
 
+        public Builder setCacheDirectory(Path cacheDirectory)
+        {
+            this.cacheDirectory = requireNonNull(cacheDirectory, "cacheDirectory is null");
+            return this;
+        }
+
+        public Builder setInitializeFromTemplate(boolean initializeFromTemplate)
+        {
+            this.initializeFromTemplate = initializeFromTemplate;
+            return this;
+        }
+
+        public Builder setDataDirectoryRoot(Path dataDirectoryRoot)
+        {
+            this.dataDirectoryRoot = Optional.of(dataDirectoryRoot);
+            return this;
+        }
+
+        public Builder setPreferSharedMemory(boolean preferSharedMemory)
+        {
+            this.preferSharedMemory = preferSharedMemory;
+            return this;
+        }
+
+        public Builder setMinFreeSpace(DataSize minFreeSpace)
+        {
+            this.minFreeSpace = requireNonNull(minFreeSpace, "minFreeSpace is null");
+            return this;
+        }
+
+        public Builder setLogStartupStats(boolean logStartupStats)
+        {
+            this.logStartupStats = logStartupStats;
+            return this;
+        }
+
+        // use a fixed server directory; data left by a previous server with RETAIN cleanup is reused
+        public Builder setServerDirectory(Path serverDirectory)
+        {
+            this.serverDirectory = Optional.of(serverDirectory);
+            return this;
+        }
+
+        public Builder setShutdownMode(ShutdownMode shutdownMode)
+        {
+            this.shutdownMode = requireNonNull(shutdownMode, "shutdownMode is null");
+            return this;
+        }
+
+        public Builder setDirectoryCleanup(DirectoryCleanup directoryCleanup)
+        {
+            this.directoryCleanup = requireNonNull(directoryCleanup, "directoryCleanup is null");
+            return this;
+        }
+
+        // start from a cached data directory image with the dataset loaded
+        public Builder setDataset(MySqlDataset dataset)
+        {
+            this.dataset = Optional.of(dataset);
+            return this;
+        }
+
+        // maximum number of connections in each pooled data source
+        public Builder setConnectionPoolSize(int connectionPoolSize)
+        {
+            checkArgument(connectionPoolSize > 0, "connectionPoolSize must be positive");
+            this.connectionPoolSize = connectionPoolSize;
+            return this;
+        }
+
+        // check idle pooled connections before handing them out
+        public Builder setValidateConnections(boolean validateConnections)
+        {
+            this.validateConnections = validateConnections;
+            return this;
+        }
+
+        // enables the driver prepared statement cache for pooled connections when positive
+        public Builder setPreparedStatementCacheSize(int preparedStatementCacheSize)
+        {
+            checkArgument(preparedStatementCacheSize >= 0, "preparedStatementCacheSize is negative");
+            this.preparedStatementCacheSize = preparedStatementCacheSize;
+            return this;
+        }
+
+        // JDBC URLs connect through the server socket file instead of TCP, requires Java 16 or later
+        public Builder setUseUnixSocket(boolean useUnixSocket)
+        {
+            this.useUnixSocket = useUnixSocket;
+            return this;
+        }
+
+        // server settings applied after the built-in start arguments
+        public Builder setProfile(MySqlProfile profile)
+        {
+            this.profile = requireNonNull(profile, "profile is null");
+            return this;
+        }
+
+        // passed to mysqld after the profile settings, so they override both, e.g. "--max_connections=20"
+        public Builder setServerArguments(List<String> serverArguments)
+        {
+            this.serverArguments = requireNonNull(serverArguments, "serverArguments is null");
+            return this;
+        }
+
+        // samples getRuntimeStats() at this interval for the lifetime of the server, see getRuntimeStatsHistory()
+        public Builder setRuntimeStatsInterval(Duration runtimeStatsInterval)
+        {
+            this.runtimeStatsInterval = Optional.of(runtimeStatsInterval);
+            return this;
+        }
+
+        // share one server between the JVMs on this host that use the same cache directory, see SharedEmbeddedMySql
+        public Builder setShared(boolean shared)
+        {
+            this.shared = shared;
+            return this;
+        }
+
+        // a JVM that has not renewed its lease on a shared server within this time is considered gone
+        public Builder setSharedLeaseTimeout(Duration sharedLeaseTimeout)
+        {
+            this.sharedLeaseTimeout = requireNonNull(sharedLeaseTimeout, "sharedLeaseTimeout is null");
+            return this;
+        }
+
+        // starts the server with row based binary logging, for reading changes with openBinlogStream()
+        public Builder setRowBinaryLog(boolean rowBinaryLog)
+        {
+            this.rowBinaryLog = rowBinaryLog;
+            return this;
+        }
+
+        // enables the performance schema statement digests, see getStatementDigests()
+        public Builder setStatementDigests(boolean statementDigests)
+        {
+            this.statementDigests = statementDigests;
+            return this;
+        }
+
         public MySqlOptions build()
         {
-            return new MySqlOptions(startupWait, shutdownWait, commandTimeout);
+            return new MySqlOptions(
+                    startupWait,
+                    shutdownWait,
+                    commandTimeout,
+                    cacheDirectory,
+                    initializeFromTemplate,
+                    dataDirectoryRoot,
+                    preferSharedMemory,
+                    minFreeSpace,
+                    logStartupStats,
+                    serverDirectory,
+                    shutdownMode,
+                    directoryCleanup,
+                    dataset,
+                    connectionPoolSize,
+                    validateConnections,
+                    preparedStatementCacheSize,
+                    useUnixSocket,
+                    profile,
+                    serverArguments,
+                    runtimeStatsInterval,
+                    shared,
+                    sharedLeaseTimeout,
+                    rowBinaryLog,
+                    statementDigests);
         }
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+// Server settings for running many small servers per host or a few heavy ones. The settings are supported by
+// MySQL 5.7, MySQL 8 and MariaDB, and each server adds the version specific ones, see getProfileArguments().
+public enum MySqlProfile
+{
+    // the server defaults
+    DEFAULT(false, ImmutableList.of()),
+    // a few tens of MB per server, for running dozens of servers per host
+    MINIMAL_MEMORY(true, ImmutableList.of(
+            "--innodb_buffer_pool_size=5M",
+            "--innodb_log_buffer_size=1M",
+            "--innodb_read_io_threads=1",
+            "--innodb_write_io_threads=1",
+            "--innodb_purge_threads=1",
+            "--innodb_page_cleaners=1",
+            "--performance_schema=OFF",
+            "--key_buffer_size=16K",
+            "--table_open_cache=64",
+            "--table_open_cache_instances=1",
+            "--table_definition_cache=400",
+            "--thread_cache_size=0",
+            "--sort_buffer_size=32K",
+            "--read_buffer_size=8K",
+            "--read_rnd_buffer_size=8K",
+            "--join_buffer_size=128K",
+            "--tmp_table_size=1M",
+            "--max_heap_table_size=1M")),
+    HIGH_THROUGHPUT(true, ImmutableList.of(
+            "--innodb_buffer_pool_size=1G",
+            "--innodb_log_buffer_size=64M",
+            "--innodb_io_capacity=10000",
+            "--innodb_io_capacity_max=20000",
+            // the hash index latch is contended under concurrent load
+            "--innodb_adaptive_hash_index=OFF",
+            "--max_connections=1000"));
+
+    private final boolean disableBinaryLog;
+    private final List<String> serverArguments;
+
+    MySqlProfile(boolean disableBinaryLog, List<String> serverArguments)
+    {
+        this.disableBinaryLog = disableBinaryLog;
+        this.serverArguments = requireNonNull(serverArguments, "serverArguments is null");
+    }
+
+    // only MySQL 8 enables the binary log by default
+    public boolean isDisableBinaryLog()
+    {
+        return disableBinaryLog;
+    }
+
+    public List<String> getServerArguments()
+    {
+        return serverArguments;
+    }
+}
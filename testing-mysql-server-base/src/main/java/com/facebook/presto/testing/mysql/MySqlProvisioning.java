@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.collect.ImmutableList;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+// Creates and drops databases and users, sending the statements as multi-statement batches instead of one round trip
+// per statement. The statements are idempotent, so a batch that failed part way can be run again. For example:
+//
+//     server.provision(MySqlProvisioning.builder()
+//             .createUser("tenant1", "secret")
+//             .createDatabase("tenant1")
+//             .grantAll("tenant1", "tenant1")
+//             .build());
+public final class MySqlProvisioning
+{
+    private static final Logger log = Logger.get(MySqlProvisioning.class);
+
+    // well below the smallest default max_allowed_packet, which is 4MB in MySQL 5.7
+    private static final int MAX_BATCH_LENGTH = 1024 * 1024;
+
+    private final List<String> statements;
+
+    private MySqlProvisioning(List<String> statements)
+    {
+        this.statements = ImmutableList.copyOf(requireNonNull(statements, "statements is null"));
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public List<String> getStatements()
+    {
+        return statements;
+    }
+
+    // the connection must allow multiple statements per query, like the root connections of the server
+    void execute(Connection connection)
+            throws SQLException
+    {
+        try (Statement statement = connection.createStatement()) {
+            for (String batch : getBatches()) {
+                log.debug("Executing: %s", batch);
+                boolean resultSet = statement.execute(batch);
+                // errors in later statements of a batch are reported when advancing to their results
+                while (resultSet || statement.getUpdateCount() != -1) {
+                    resultSet = statement.getMoreResults();
+                }
+            }
+        }
+    }
+
+    private List<String> getBatches()
+    {
+        List<String> batches = new ArrayList<>();
+        StringBuilder batch = new StringBuilder();
+        for (String statement : statements) {
+            if (batch.length() > 0 && batch.length() + statement.length() > MAX_BATCH_LENGTH) {
+                batches.add(batch.toString());
+                batch.setLength(0);
+            }
+            if (batch.length() > 0) {
+                batch.append(";\n");
+            }
+            batch.append(statement);
+        }
+        if (batch.length() > 0) {
+            batches.add(batch.toString());
+        }
+        return batches;
+    }
+
+    public static class Builder
+    {
+        private final ImmutableList.Builder<String> statements = ImmutableList.builder();
+
+        private Builder() {}
+
+        public Builder createDatabase(String database)
+        {
+            statements.add(format("CREATE DATABASE IF NOT EXISTS %s", quoteIdentifier(database)));
+            return this;
+        }
+
+        public Builder dropDatabase(String database)
+        {
+            statements.add(format("DROP DATABASE IF EXISTS %s", quoteIdentifier(database)));
+            return this;
+        }
+
+        // users are created for localhost, which matches both TCP and unix socket connections
+        public Builder createUser(String user, String password)
+        {
+            statements.add(format("CREATE USER IF NOT EXISTS %s IDENTIFIED BY %s", quoteUser(user), quoteString(password)));
+            return this;
+        }
+
+        public Builder dropUser(String user)
+        {
+            statements.add(format("DROP USER IF EXISTS %s", quoteUser(user)));
+            return this;
+        }
+
+        // all privileges on all databases, including granting them to other users
+        public Builder grantAll(String user)
+        {
+            statements.add(format("GRANT ALL ON *.* TO %s WITH GRANT OPTION", quoteUser(user)));
+            return this;
+        }
+
+        public Builder grantAll(String user, String database)
+        {
+            statements.add(format("GRANT ALL ON %s.* TO %s", quoteIdentifier(database), quoteUser(user)));
+            return this;
+        }
+
+        public MySqlProvisioning build()
+        {
+            return new MySqlProvisioning(statements.build());
+        }
+    }
+
+    private static String quoteIdentifier(String identifier)
+    {
+        checkArgument(!requireNonNull(identifier, "identifier is null").isEmpty(), "identifier is empty");
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    private static String quoteUser(String user)
+    {
+        return quoteString(requireNonNull(user, "user is null")) + "@'localhost'";
+    }
+
+    static String quoteString(String value)
+    {
+        return "'" + value.replace("\\", "\\\\").replace("'", "''") + "'";
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.util.Comparator.comparingInt;
+import static java.util.Objects.requireNonNull;
+
+public class MySqlServerPool
+        implements Closeable
+{
+    private static final Logger log = Logger.get(MySqlServerPool.class);
+
+    private final int maxServers;
+    private final Callable<? extends AbstractTestingMySqlServer> serverFactory;
+
+    private final List<PooledServer> servers = new ArrayList<>();
+    private boolean closed;
+
+    public MySqlServerPool(int maxServers, Callable<? extends AbstractTestingMySqlServer> serverFactory)
+    {
+        checkArgument(maxServers > 0, "maxServers must be positive");
+        this.maxServers = maxServers;
+        this.serverFactory = requireNonNull(serverFactory, "serverFactory is null");
+    }
+
+    public MySqlDatabaseLease lease()
+            throws Exception
+    {
+        return getOnlyElement(lease(1));
+    }
+
+    // the databases and users of all leases are created in one round trip, and the leases share a server
+    public List<MySqlDatabaseLease> lease(int count)
+            throws Exception
+    {
+        checkArgument(count > 0, "count must be positive");
+        PooledServer pooledServer = acquireServer(count);
+
+        ImmutableList.Builder<MySqlDatabaseLease> leases = ImmutableList.builder();
+        MySqlProvisioning.Builder provisioning = MySqlProvisioning.builder();
+        for (int i = 0; i < count; i++) {
+            String id = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+            String name = "lease_" + id;
+            String password = UUID.randomUUID().toString().replace("-", "");
+            provisioning.createDatabase(name)
+                    .createUser(name, password)
+                    .grantAll(name, name);
+            leases.add(new MySqlDatabaseLease(this, pooledServer.getServer(), name, name, password));
+        }
+
+        try {
+            pooledServer.getServer().provision(provisioning.build());
+        }
+        catch (SQLException e) {
+            release(pooledServer, count);
+            throw e;
+        }
+        return leases.build();
+    }
+
+    public synchronized int getServerCount()
+    {
+        return servers.size();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        List<PooledServer> toClose;
+        synchronized (this) {
+            closed = true;
+            // servers still starting are closed by the thread starting them
+            toClose = servers.stream()
+                    .filter(PooledServer::isStarted)
+                    .collect(toImmutableList());
+            servers.clear();
+        }
+
+        IOException exception = null;
+        for (PooledServer pooledServer : toClose) {
+            try {
+                pooledServer.getServer().close();
+            }
+            catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+                else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    void release(MySqlDatabaseLease lease)
+    {
+        try {
+            lease.getServer().provision(MySqlProvisioning.builder()
+                    .dropDatabase(lease.getDatabase())
+                    .dropUser(lease.getUser())
+                    .build());
+        }
+        catch (SQLException e) {
+            log.warn(e, "Failed to drop database %s", lease.getDatabase());
+        }
+
+        synchronized (this) {
+            for (PooledServer pooledServer : servers) {
+                if (pooledServer.isStarted() && pooledServer.getServer() == lease.getServer()) {
+                    release(pooledServer, 1);
+                }
+            }
+        }
+    }
+
+    private synchronized void release(PooledServer pooledServer, int count)
+    {
+        pooledServer.leases -= count;
+    }
+
+    private PooledServer acquireServer(int count)
+            throws Exception
+    {
+        // reserve a slot under the lock, but start the server outside it so other leases and releases are not blocked
+        PooledServer pooledServer;
+        boolean start = false;
+        synchronized (this) {
+            checkState(!closed, "pool is closed");
+
+            // prefer an idle server, start a new one while below the limit, otherwise share the least used server
+            pooledServer = servers.stream()
+                    .min(comparingInt(server -> server.leases))
+                    .orElse(null);
+            if (pooledServer == null || (pooledServer.leases > 0 && servers.size() < maxServers)) {
+                pooledServer = new PooledServer();
+                servers.add(pooledServer);
+                start = true;
+            }
+            pooledServer.leases += count;
+        }
+
+        if (start) {
+            startServer(pooledServer);
+        }
+        try {
+            pooledServer.awaitServer();
+        }
+        catch (Exception e) {
+            release(pooledServer, count);
+            throw e;
+        }
+        return pooledServer;
+    }
+
+    private void startServer(PooledServer pooledServer)
+            throws Exception
+    {
+        AbstractTestingMySqlServer server;
+        try {
+            server = serverFactory.call();
+        }
+        catch (Exception | Error e) {
+            synchronized (this) {
+                servers.remove(pooledServer);
+            }
+            pooledServer.started.setException(e);
+            throw e;
+        }
+
+        boolean poolClosed;
+        synchronized (this) {
+            // the pool may have been closed while the server was starting, in which case close() skipped it
+            poolClosed = closed;
+            if (!poolClosed) {
+                pooledServer.server = server;
+            }
+        }
+        if (poolClosed) {
+            server.close();
+            IllegalStateException exception = new IllegalStateException("pool is closed");
+            pooledServer.started.setException(exception);
+            throw exception;
+        }
+        pooledServer.started.set(server);
+    }
+
+    private static class PooledServer
+    {
+        private final SettableFuture<AbstractTestingMySqlServer> started = SettableFuture.create();
+        private AbstractTestingMySqlServer server;
+        private int leases;
+
+        public AbstractTestingMySqlServer getServer()
+        {
+            checkState(server != null, "server is not started");
+            return server;
+        }
+
+        public boolean isStarted()
+        {
+            return server != null;
+        }
+
+        public void awaitServer()
+                throws Exception
+        {
+            try {
+                started.get();
+            }
+            catch (ExecutionException e) {
+                throwIfInstanceOf(e.getCause(), Exception.class);
+                throwIfUnchecked(e.getCause());
+                throw e;
+            }
+        }
+    }
+}
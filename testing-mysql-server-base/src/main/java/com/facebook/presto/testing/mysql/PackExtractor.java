@@ -0,0 +1,287 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.testing.mysql.TarExtractor.toPermissions;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.getFileStore;
+import static java.nio.file.Files.setPosixFilePermissions;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+// Extracts the pack format written by pack-mysql.sh: a text index followed by one gzip stream per file.
+// Files are decompressed in parallel, and files rejected by the filter are skipped without decompressing them.
+final class PackExtractor
+{
+    private static final String MAGIC = "MYSQLPACK 1";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int EXTRACT_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService EXTRACT_EXECUTOR = newFixedThreadPool(EXTRACT_THREADS, daemonThreadsNamed("testing-mysql-server-extract-%s"));
+
+    // the frames read ahead of the workers, so that the archive is not read into memory when the workers fall behind
+    private static final int MAX_FRAMES_IN_FLIGHT = 2 * EXTRACT_THREADS;
+
+    private PackExtractor() {}
+
+    public static void extractPack(InputStream input, Path target, Predicate<String> filter)
+            throws IOException
+    {
+        InputStream in = new BufferedInputStream(input, BUFFER_SIZE);
+        Path root = createDirectories(target).toAbsolutePath().normalize();
+        boolean posix = getFileStore(root).supportsFileAttributeView("posix");
+
+        if (!readLine(in).equals(MAGIC)) {
+            throw new IOException("Not a pack archive");
+        }
+        List<Entry> entries = new ArrayList<>();
+        int count = parseInt(readLine(in));
+        for (int i = 0; i < count; i++) {
+            entries.add(Entry.parse(readLine(in)));
+        }
+
+        // the compressed frames are handed to the workers in memory, and released when the file is written
+        Semaphore framesInFlight = new Semaphore(MAX_FRAMES_IN_FLIGHT);
+        List<Future<?>> futures = new ArrayList<>();
+        long position = 0;
+        for (Entry entry : entries) {
+            Path path = root.resolve(entry.getPath()).normalize();
+            if (!path.startsWith(root)) {
+                throw new IOException("Archive entry is outside of the target directory: " + entry.getPath());
+            }
+            if (entry.isDirectory()) {
+                if (filter.test(entry.getPath())) {
+                    createDirectories(path);
+                }
+                continue;
+            }
+            if (entry.getOffset() != position) {
+                throw new IOException("Invalid offset for archive entry: " + entry.getPath());
+            }
+            position += entry.getCompressedSize();
+
+            if (!filter.test(entry.getPath())) {
+                ByteStreams.skipFully(in, entry.getCompressedSize());
+                continue;
+            }
+            try {
+                framesInFlight.acquire();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while extracting to " + target, e);
+            }
+            try {
+                byte[] frame = new byte[(int) entry.getCompressedSize()];
+                ByteStreams.readFully(in, frame);
+                createDirectories(path.getParent());
+                futures.add(EXTRACT_EXECUTOR.submit(() -> {
+                    try {
+                        writeFile(frame, path, entry, posix);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    finally {
+                        framesInFlight.release();
+                    }
+                }));
+            }
+            catch (IOException | RuntimeException e) {
+                framesInFlight.release();
+                throw e;
+            }
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while extracting to " + target, e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                throwIfInstanceOf(cause, IOException.class);
+                throwIfUnchecked(cause);
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static void writeFile(byte[] frame, Path path, Entry entry, boolean posix)
+            throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(frame), BUFFER_SIZE);
+                FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE)) {
+            while (true) {
+                int length = in.read(buffer);
+                if (length < 0) {
+                    break;
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                written += length;
+            }
+        }
+        if (written != entry.getSize()) {
+            throw new IOException("Invalid size for archive entry: " + entry.getPath());
+        }
+
+        if (posix) {
+            setPosixFilePermissions(path, toPermissions(entry.getMode()));
+        }
+        else if ((entry.getMode() & 0100) != 0) {
+            path.toFile().setExecutable(true);
+        }
+    }
+
+    private static String readLine(InputStream in)
+            throws IOException
+    {
+        // the data follows the index in the same stream, so lines are read one byte at a time
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int value = in.read();
+            if (value < 0) {
+                throw new EOFException("Truncated archive index");
+            }
+            if (value == '\n') {
+                return new String(line.toByteArray(), UTF_8);
+            }
+            line.write(value);
+        }
+    }
+
+    private static int parseInt(String value)
+            throws IOException
+    {
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Invalid archive index", e);
+        }
+    }
+
+    private static class Entry
+    {
+        private final boolean directory;
+        private final int mode;
+        private final long offset;
+        private final long compressedSize;
+        private final long size;
+        private final String path;
+
+        public Entry(boolean directory, int mode, long offset, long compressedSize, long size, String path)
+        {
+            this.directory = directory;
+            this.mode = mode;
+            this.offset = offset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.path = path;
+        }
+
+        public static Entry parse(String line)
+                throws IOException
+        {
+            // the path is last, so it may contain spaces
+            String[] fields = line.split(" ", 6);
+            if (fields.length != 6 || !(fields[0].equals("d") || fields[0].equals("f"))) {
+                throw new IOException("Invalid archive index entry: " + line);
+            }
+            try {
+                long compressedSize = Long.parseLong(fields[3]);
+                if (compressedSize > Integer.MAX_VALUE) {
+                    throw new IOException("Archive entry is too large: " + fields[5]);
+                }
+                return new Entry(
+                        fields[0].equals("d"),
+                        Integer.parseInt(fields[1], 8),
+                        Long.parseLong(fields[2]),
+                        compressedSize,
+                        Long.parseLong(fields[4]),
+                        fields[5]);
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Invalid archive index entry: " + line, e);
+            }
+        }
+
+        public boolean isDirectory()
+        {
+            return directory;
+        }
+
+        public int getMode()
+        {
+            return mode;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public long getCompressedSize()
+        {
+            return compressedSize;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+    }
+}
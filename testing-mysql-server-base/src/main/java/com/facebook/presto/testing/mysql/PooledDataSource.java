@@ -0,0 +1,380 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+
+import javax.sql.DataSource;
+
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// A small connection pool for tests. Connections are returned to the pool when closed, after rolling back
+// an open transaction and restoring the auto-commit mode, catalog, read-only flag and isolation level.
+// Connections that executed statements also have their server session reset (session and user variables,
+// sql_mode, character set and temporary tables) with the driver's resetServerState(). Connections of a
+// driver without it are discarded instead of being pooled.
+final class PooledDataSource
+        implements DataSource, Closeable
+{
+    private static final Logger log = Logger.get(PooledDataSource.class);
+
+    private static final int DEFAULT_ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final boolean validateConnections;
+    private final Semaphore permits;
+    private final Deque<PhysicalConnection> idle = new ArrayDeque<>();
+
+    private volatile int loginTimeoutSeconds;
+    private volatile PrintWriter logWriter;
+    private boolean closed;
+
+    public PooledDataSource(String url, int maxSize, boolean validateConnections)
+    {
+        checkArgument(maxSize > 0, "maxSize must be positive");
+        this.url = requireNonNull(url, "url is null");
+        this.validateConnections = validateConnections;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public static PooledDataSource create(String url, MySqlOptions mySqlOptions)
+    {
+        if (mySqlOptions.getPreparedStatementCacheSize() > 0) {
+            url += "&cachePrepStmts=true&prepStmtCacheSize=" + mySqlOptions.getPreparedStatementCacheSize();
+        }
+        return new PooledDataSource(url, mySqlOptions.getConnectionPoolSize(), mySqlOptions.isValidateConnections());
+    }
+
+    @Override
+    public Connection getConnection()
+            throws SQLException
+    {
+        int timeout = (loginTimeoutSeconds > 0) ? loginTimeoutSeconds : DEFAULT_ACQUIRE_TIMEOUT_SECONDS;
+        try {
+            if (!permits.tryAcquire(timeout, SECONDS)) {
+                throw new SQLException("Timed out waiting for a pooled connection after " + timeout + " seconds");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+
+        try {
+            return wrap(borrow());
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String user, String password)
+            throws SQLException
+    {
+        throw new SQLFeatureNotSupportedException("Pooled connections are bound to a single user");
+    }
+
+    @Override
+    public void close()
+    {
+        Deque<PhysicalConnection> connections;
+        synchronized (this) {
+            closed = true;
+            connections = new ArrayDeque<>(idle);
+            idle.clear();
+        }
+        for (PhysicalConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private PhysicalConnection borrow()
+            throws SQLException
+    {
+        while (true) {
+            PhysicalConnection connection;
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                // reuse the most recently returned connection, it is the least likely to have timed out
+                connection = idle.pollFirst();
+            }
+            if (connection == null) {
+                return new PhysicalConnection(DriverManager.getConnection(url));
+            }
+            if (!validateConnections || connection.isValid()) {
+                return connection;
+            }
+            connection.close();
+        }
+    }
+
+    private void release(PhysicalConnection connection, boolean reusable)
+    {
+        try {
+            if (reusable && connection.reset()) {
+                synchronized (this) {
+                    if (!closed) {
+                        idle.addFirst(connection);
+                        return;
+                    }
+                }
+            }
+            connection.close();
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    private Connection wrap(PhysicalConnection connection)
+    {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                new PooledConnection(connection));
+    }
+
+    @Override
+    public PrintWriter getLogWriter()
+    {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter logWriter)
+    {
+        this.logWriter = logWriter;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds)
+    {
+        this.loginTimeoutSeconds = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout()
+    {
+        return loginTimeoutSeconds;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger()
+            throws SQLFeatureNotSupportedException
+    {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type)
+            throws SQLException
+    {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type)
+    {
+        return type.isInstance(this);
+    }
+
+    private class PooledConnection
+            implements InvocationHandler
+    {
+        private final PhysicalConnection connection;
+        private boolean closed;
+        private boolean broken;
+
+        public PooledConnection(PhysicalConnection connection)
+        {
+            this.connection = requireNonNull(connection, "connection is null");
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable
+        {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(connection, !broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.getConnection().isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "pooled " + connection.getConnection();
+                case "unwrap":
+                case "isWrapperFor":
+                    break;
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    connection.beforeInvoke(method.getName());
+            }
+
+            try {
+                return method.invoke(connection.getConnection(), args);
+            }
+            catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isConnectionError((SQLException) cause)) {
+                    broken = true;
+                }
+                throw cause;
+            }
+        }
+
+        private boolean isConnectionError(SQLException e)
+        {
+            // SQL state class 08 is a connection exception
+            return e.getSQLState() != null && e.getSQLState().startsWith("08");
+        }
+    }
+
+    private static class PhysicalConnection
+    {
+        private final Connection connection;
+        private final String catalog;
+        private final Optional<Method> resetServerState;
+
+        // statements can change session state that the JDBC API does not expose
+        private boolean sessionUsed;
+
+        // captured before the first change, so unchanged connections are reset without round trips
+        private Boolean readOnly;
+        private Integer transactionIsolation;
+
+        public PhysicalConnection(Connection connection)
+                throws SQLException
+        {
+            this.connection = requireNonNull(connection, "connection is null");
+            this.catalog = connection.getCatalog();
+            this.resetServerState = findResetServerState(connection);
+        }
+
+        public Connection getConnection()
+        {
+            return connection;
+        }
+
+        public void beforeInvoke(String methodName)
+                throws SQLException
+        {
+            if (methodName.equals("createStatement") || methodName.equals("prepareStatement") || methodName.equals("prepareCall")) {
+                sessionUsed = true;
+            }
+            else if (methodName.equals("setReadOnly") && readOnly == null) {
+                readOnly = connection.isReadOnly();
+            }
+            else if (methodName.equals("setTransactionIsolation") && transactionIsolation == null) {
+                transactionIsolation = connection.getTransactionIsolation();
+            }
+        }
+
+        public boolean isValid()
+                throws SQLException
+        {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        }
+
+        public boolean reset()
+        {
+            try {
+                if (connection.isClosed()) {
+                    return false;
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                if (catalog != null && !catalog.equals(connection.getCatalog())) {
+                    connection.setCatalog(catalog);
+                }
+                if (readOnly != null && connection.isReadOnly() != readOnly) {
+                    connection.setReadOnly(readOnly);
+                }
+                if (transactionIsolation != null && connection.getTransactionIsolation() != transactionIsolation) {
+                    connection.setTransactionIsolation(transactionIsolation);
+                }
+                connection.clearWarnings();
+                if (sessionUsed) {
+                    if (!resetServerState.isPresent()) {
+                        return false;
+                    }
+                    // Connector/J re-authenticates the session, which discards all session state, and then reapplies its own settings
+                    resetServerState.get().invoke(connection);
+                    sessionUsed = false;
+                }
+                return true;
+            }
+            catch (SQLException | ReflectiveOperationException e) {
+                log.debug(e, "Failed to reset pooled connection");
+                return false;
+            }
+        }
+
+        private static Optional<Method> findResetServerState(Connection connection)
+        {
+            // com.mysql.jdbc.Connection in Connector/J 5.1 and com.mysql.cj.jdbc.JdbcConnection in 8.0
+            try {
+                return Optional.of(connection.getClass().getMethod("resetServerState"));
+            }
+            catch (NoSuchMethodException e) {
+                return Optional.empty();
+            }
+        }
+
+        public void close()
+        {
+            try {
+                connection.close();
+            }
+            catch (SQLException e) {
+                log.debug(e, "Failed to close connection");
+            }
+        }
+    }
+}
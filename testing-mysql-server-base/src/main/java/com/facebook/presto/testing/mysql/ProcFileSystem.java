@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.succinctDataSize;
+import static io.airlift.units.Duration.succinctNanos;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.readAllLines;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// Reads process information from /proc on Linux. Other platforms report nothing.
+final class ProcFileSystem
+{
+    private static final Path PROC = Paths.get("/proc");
+
+    // USER_HZ, which is 100 on all supported architectures
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    // indexes of utime and stime in /proc/<pid>/stat, counting from the state field
+    private static final int UTIME_FIELD = 11;
+    private static final int STIME_FIELD = 12;
+
+    private ProcFileSystem() {}
+
+    public static OptionalLong readPid(Path pidFile)
+    {
+        try {
+            List<String> lines = readAllLines(pidFile, US_ASCII);
+            if (!lines.isEmpty()) {
+                return OptionalLong.of(Long.parseLong(lines.get(0).trim()));
+            }
+        }
+        catch (IOException | NumberFormatException ignored) {
+            // mysqld has not written the file yet
+        }
+        return OptionalLong.empty();
+    }
+
+    public static Optional<DataSize> getResidentMemory(long pid)
+    {
+        return getResidentMemory(PROC.resolve(String.valueOf(pid)));
+    }
+
+    static Optional<DataSize> getResidentMemory(Path processDirectory)
+    {
+        // "VmRSS:     123456 kB"
+        return readStatus(processDirectory, "VmRSS")
+                .map(value -> succinctDataSize(Long.parseLong(value.replace("kB", "").trim()), KILOBYTE));
+    }
+
+    public static Optional<Duration> getCpuTime(long pid)
+    {
+        return getCpuTime(PROC.resolve(String.valueOf(pid)));
+    }
+
+    static Optional<Duration> getCpuTime(Path processDirectory)
+    {
+        try {
+            // the command name may contain spaces, so the fields are counted from the closing parenthesis
+            String stat = new String(readAllBytes(processDirectory.resolve("stat")), US_ASCII);
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            long ticks = Long.parseLong(fields[UTIME_FIELD]) + Long.parseLong(fields[STIME_FIELD]);
+            return Optional.of(succinctNanos(SECONDS.toNanos(ticks) / CLOCK_TICKS_PER_SECOND));
+        }
+        catch (IOException | RuntimeException ignored) {
+            return Optional.empty();
+        }
+    }
+
+    public static OptionalInt getOpenFiles(long pid)
+    {
+        return getOpenFiles(PROC.resolve(String.valueOf(pid)));
+    }
+
+    static OptionalInt getOpenFiles(Path processDirectory)
+    {
+        try (DirectoryStream<Path> files = newDirectoryStream(processDirectory.resolve("fd"))) {
+            int count = 0;
+            for (Path ignored : files) {
+                count++;
+            }
+            return OptionalInt.of(count);
+        }
+        catch (IOException ignored) {
+            return OptionalInt.empty();
+        }
+    }
+
+    private static Optional<String> readStatus(Path processDirectory, String key)
+    {
+        try {
+            for (String line : readAllLines(processDirectory.resolve("status"), US_ASCII)) {
+                if (line.startsWith(key + ":")) {
+                    return Optional.of(line.substring(key.length() + 1).trim());
+                }
+            }
+        }
+        catch (IOException ignored) {
+            // not running on Linux, or the process has exited
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static java.lang.String.format;
+
+// MySQL 8.4 removed the MASTER and SLAVE spelling of the replication statements, options and status columns
+enum ReplicationDialect
+{
+    MYSQL_5_7(
+            ImmutableList.of("--log-slave-updates", "--skip-slave-start"),
+            "RESET MASTER",
+            "CHANGE MASTER TO MASTER_HOST = '127.0.0.1', MASTER_PORT = %s, MASTER_USER = %s, MASTER_PASSWORD = %s, MASTER_AUTO_POSITION = 1",
+            "START SLAVE",
+            "SHOW SLAVE STATUS",
+            "Slave_IO_Running",
+            "Slave_SQL_Running",
+            "Seconds_Behind_Master"),
+    MYSQL_8_4(
+            ImmutableList.of("--log-replica-updates=ON", "--skip-replica-start=ON"),
+            "RESET BINARY LOGS AND GTIDS",
+            // the test users authenticate with caching_sha2_password, which needs the key of the source without TLS
+            "CHANGE REPLICATION SOURCE TO SOURCE_HOST = '127.0.0.1', SOURCE_PORT = %s, SOURCE_USER = %s, SOURCE_PASSWORD = %s, SOURCE_AUTO_POSITION = 1, GET_SOURCE_PUBLIC_KEY = 1",
+            "START REPLICA",
+            "SHOW REPLICA STATUS",
+            "Replica_IO_Running",
+            "Replica_SQL_Running",
+            "Seconds_Behind_Source");
+
+    private final List<String> serverArguments;
+    private final String resetStatement;
+    private final String changeSourceStatement;
+    private final String startReplicaStatement;
+    private final String replicaStatusStatement;
+    private final String ioRunningColumn;
+    private final String sqlRunningColumn;
+    private final String lagColumn;
+
+    ReplicationDialect(
+            List<String> serverArguments,
+            String resetStatement,
+            String changeSourceStatement,
+            String startReplicaStatement,
+            String replicaStatusStatement,
+            String ioRunningColumn,
+            String sqlRunningColumn,
+            String lagColumn)
+    {
+        this.serverArguments = serverArguments;
+        this.resetStatement = resetStatement;
+        this.changeSourceStatement = changeSourceStatement;
+        this.startReplicaStatement = startReplicaStatement;
+        this.replicaStatusStatement = replicaStatusStatement;
+        this.ioRunningColumn = ioRunningColumn;
+        this.sqlRunningColumn = sqlRunningColumn;
+        this.lagColumn = lagColumn;
+    }
+
+    public List<String> getServerArguments(int serverId)
+    {
+        return ImmutableList.<String>builder()
+                .add("--server-id=" + serverId)
+                .add("--log-bin=binlog")
+                .add("--gtid-mode=ON")
+                .add("--enforce-gtid-consistency=ON")
+                .addAll(serverArguments)
+                .build();
+    }
+
+    public String getResetStatement()
+    {
+        return resetStatement;
+    }
+
+    public String getChangeSourceStatement(int sourcePort, String user, String password)
+    {
+        return format(changeSourceStatement, sourcePort, MySqlProvisioning.quoteString(user), MySqlProvisioning.quoteString(password));
+    }
+
+    public String getStartReplicaStatement()
+    {
+        return startReplicaStatement;
+    }
+
+    public String getReplicaStatusStatement()
+    {
+        return replicaStatusStatement;
+    }
+
+    public String getIoRunningColumn()
+    {
+        return ioRunningColumn;
+    }
+
+    public String getSqlRunningColumn()
+    {
+        return sqlRunningColumn;
+    }
+
+    public String getLagColumn()
+    {
+        return lagColumn;
+    }
+}
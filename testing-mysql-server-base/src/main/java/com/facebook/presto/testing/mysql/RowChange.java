@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+// A row inserted, updated or deleted by a transaction, decoded from a row event of the binary log.
+// The values are in the order of the table columns, see BinlogReader for the Java types of the columns.
+public final class RowChange
+{
+    public enum Type
+    {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final String database;
+    private final String table;
+    private final Instant timestamp;
+    private final Object[] before;
+    private final Object[] after;
+
+    public RowChange(Type type, String database, String table, Instant timestamp, Optional<Object[]> before, Optional<Object[]> after)
+    {
+        this.type = requireNonNull(type, "type is null");
+        this.database = requireNonNull(database, "database is null");
+        this.table = requireNonNull(table, "table is null");
+        this.timestamp = requireNonNull(timestamp, "timestamp is null");
+        this.before = requireNonNull(before, "before is null").orElse(null);
+        this.after = requireNonNull(after, "after is null").orElse(null);
+        checkArgument((this.before != null) == (type != Type.INSERT), "only updates and deletes have a before image");
+        checkArgument((this.after != null) == (type != Type.DELETE), "only inserts and updates have an after image");
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public String getDatabase()
+    {
+        return database;
+    }
+
+    public String getTable()
+    {
+        return table;
+    }
+
+    // the time the transaction started on the server, in seconds
+    public Instant getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public Optional<Object[]> getBefore()
+    {
+        return Optional.ofNullable(before).map(Object[]::clone);
+    }
+
+    public Optional<Object[]> getAfter()
+    {
+        return Optional.ofNullable(after).map(Object[]::clone);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("type", type)
+                .add("database", database)
+                .add("table", table)
+                .add("timestamp", timestamp)
+                .add("before", (before == null) ? null : Arrays.toString(before))
+                .add("after", (after == null) ? null : Arrays.toString(after))
+                .omitNullValues()
+                .toString();
+    }
+}
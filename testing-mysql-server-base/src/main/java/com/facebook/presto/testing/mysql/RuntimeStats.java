@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+// Resource usage of mysqld and server status counters. The process values are only available on Linux,
+// and the counters are cumulative since the server started.
+public final class RuntimeStats
+{
+    private final Instant time;
+    private final Optional<Duration> cpuTime;
+    private final Optional<DataSize> residentMemory;
+    private final OptionalInt openFiles;
+    private final DataSize dataDirectorySize;
+    private final long queries;
+    private final long innodbRowsRead;
+    private final long innodbRowsInserted;
+    private final long innodbRowsUpdated;
+    private final long innodbRowsDeleted;
+    private final long bufferPoolReadRequests;
+    private final long bufferPoolReads;
+
+    public RuntimeStats(
+            Instant time,
+            Optional<Duration> cpuTime,
+            Optional<DataSize> residentMemory,
+            OptionalInt openFiles,
+            DataSize dataDirectorySize,
+            long queries,
+            long innodbRowsRead,
+            long innodbRowsInserted,
+            long innodbRowsUpdated,
+            long innodbRowsDeleted,
+            long bufferPoolReadRequests,
+            long bufferPoolReads)
+    {
+        this.time = requireNonNull(time, "time is null");
+        this.cpuTime = requireNonNull(cpuTime, "cpuTime is null");
+        this.residentMemory = requireNonNull(residentMemory, "residentMemory is null");
+        this.openFiles = requireNonNull(openFiles, "openFiles is null");
+        this.dataDirectorySize = requireNonNull(dataDirectorySize, "dataDirectorySize is null");
+        this.queries = queries;
+        this.innodbRowsRead = innodbRowsRead;
+        this.innodbRowsInserted = innodbRowsInserted;
+        this.innodbRowsUpdated = innodbRowsUpdated;
+        this.innodbRowsDeleted = innodbRowsDeleted;
+        this.bufferPoolReadRequests = bufferPoolReadRequests;
+        this.bufferPoolReads = bufferPoolReads;
+    }
+
+    public Instant getTime()
+    {
+        return time;
+    }
+
+    // user and system time of mysqld
+    public Optional<Duration> getCpuTime()
+    {
+        return cpuTime;
+    }
+
+    public Optional<DataSize> getResidentMemory()
+    {
+        return residentMemory;
+    }
+
+    public OptionalInt getOpenFiles()
+    {
+        return openFiles;
+    }
+
+    public DataSize getDataDirectorySize()
+    {
+        return dataDirectorySize;
+    }
+
+    // statements executed by the server, including the ones run by this library
+    public long getQueries()
+    {
+        return queries;
+    }
+
+    public long getInnodbRowsRead()
+    {
+        return innodbRowsRead;
+    }
+
+    public long getInnodbRowsInserted()
+    {
+        return innodbRowsInserted;
+    }
+
+    public long getInnodbRowsUpdated()
+    {
+        return innodbRowsUpdated;
+    }
+
+    public long getInnodbRowsDeleted()
+    {
+        return innodbRowsDeleted;
+    }
+
+    public long getInnodbRowsWritten()
+    {
+        return innodbRowsInserted + innodbRowsUpdated + innodbRowsDeleted;
+    }
+
+    public long getBufferPoolReadRequests()
+    {
+        return bufferPoolReadRequests;
+    }
+
+    // reads that missed the buffer pool and went to disk
+    public long getBufferPoolReads()
+    {
+        return bufferPoolReads;
+    }
+
+    public double getBufferPoolHitRate()
+    {
+        if (bufferPoolReadRequests == 0) {
+            return 1.0;
+        }
+        return 1.0 - ((double) bufferPoolReads / bufferPoolReadRequests);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .omitNullValues()
+                .add("time", time)
+                .add("cpuTime", cpuTime.orElse(null))
+                .add("residentMemory", residentMemory.orElse(null))
+                .add("openFiles", openFiles.isPresent() ? openFiles.getAsInt() : null)
+                .add("dataDirectorySize", dataDirectorySize)
+                .add("queries", queries)
+                .add("innodbRowsRead", innodbRowsRead)
+                .add("innodbRowsWritten", getInnodbRowsWritten())
+                .add("bufferPoolHitRate", getBufferPoolHitRate())
+                .toString();
+    }
+}
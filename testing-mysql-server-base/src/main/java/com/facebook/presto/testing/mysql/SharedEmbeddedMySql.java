@@ -0,0 +1,535 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.SocketChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.transform;
+import static com.google.common.hash.Hashing.sha256;
+import static io.airlift.units.Duration.succinctNanos;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.readAllLines;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+// Shares one mysqld between the JVMs on a host, such as Surefire forks. The first JVM starts the server and records it
+// in a state file under the cache directory, and later JVMs attach to it. Every attachment holds a lease file that is
+// touched periodically, and the server is shut down when the last lease is released. Leases that are not touched within
+// the lease timeout belong to a JVM that exited without closing its server, and are discarded. A server without live
+// leases is stopped by the next JVM that attaches, so a crashed fork does not leave it running for every later run.
+// A lease records the user and databases of its attachment, and an attachment that names a user or database of another
+// live lease is rejected, so that forks never share tables or overwrite each other's password.
+final class SharedEmbeddedMySql
+        implements EmbeddedMySql
+{
+    private static final Logger log = Logger.get(SharedEmbeddedMySql.class);
+
+    private static final ScheduledExecutorService HEARTBEAT_EXECUTOR = newSingleThreadScheduledExecutor(daemonThreadsNamed("testing-mysql-server-lease-%s"));
+
+    private static final long SHUTDOWN_PROBE_INTERVAL_MILLIS = 50;
+
+    private final MySqlOptions mySqlOptions;
+    private final Path directory;
+    private final SharedState state;
+    private final Path leaseFile;
+    private final Optional<AbstractEmbeddedMySql> ownedServer;
+    private final boolean useUnixSocket;
+    private final PooledDataSource rootDataSource;
+    private final StartupStats startupStats;
+    private final ScheduledFuture<?> heartbeat;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SharedEmbeddedMySql(MySqlOptions mySqlOptions, Path directory, SharedState state, Path leaseFile, Optional<AbstractEmbeddedMySql> ownedServer, Duration attachTime)
+    {
+        this.mySqlOptions = requireNonNull(mySqlOptions, "mySqlOptions is null");
+        this.directory = requireNonNull(directory, "directory is null");
+        this.state = requireNonNull(state, "state is null");
+        this.leaseFile = requireNonNull(leaseFile, "leaseFile is null");
+        this.ownedServer = requireNonNull(ownedServer, "ownedServer is null");
+
+        this.useUnixSocket = mySqlOptions.isUseUnixSocket() && UnixDomainSockets.isSupported();
+        if (useUnixSocket) {
+            UnixDomainSockets.register(state.getPort(), state.getSocketFile());
+        }
+        this.rootDataSource = PooledDataSource.create(getRootJdbcUrl(), mySqlOptions);
+        this.startupStats = ownedServer
+                .map(AbstractEmbeddedMySql::getStartupStats)
+                .orElseGet(() -> new StartupStats(zero(), zero(), zero(), attachTime, zero()));
+
+        long interval = mySqlOptions.getSharedLeaseTimeout().toMillis() / 4;
+        this.heartbeat = HEARTBEAT_EXECUTOR.scheduleWithFixedDelay(this::renewLease, interval, interval, MILLISECONDS);
+    }
+
+    // the name identifies the server implementation, so that servers of different versions are not shared
+    public static SharedEmbeddedMySql attach(String name, MySqlOptions mySqlOptions, String user, Iterable<String> databases, Callable<? extends AbstractEmbeddedMySql> serverFactory)
+            throws Exception
+    {
+        Stopwatch attach = Stopwatch.createStarted();
+        Path directory = mySqlOptions.getCacheDirectory().resolve("shared").resolve(getKey(name, mySqlOptions));
+        createDirectories(directory.resolve("leases"));
+
+        List<String> claims = ImmutableList.<String>builder()
+                .add("user " + requireNonNull(user, "user is null"))
+                .addAll(transform(requireNonNull(databases, "databases is null"), database -> "database " + database))
+                .build();
+
+        SharedEmbeddedMySql attached = withLock(directory, () -> {
+            Optional<AbstractEmbeddedMySql> ownedServer = Optional.empty();
+            Optional<SharedState> state = SharedState.read(directory);
+            if (state.isPresent() && !isReady(state.get())) {
+                log.warn("Shared MySQL server on port %s is not running, starting a new one", state.get().getPort());
+                discard(directory);
+                state = Optional.empty();
+            }
+            // the JVMs holding the leases exited without closing the server, for example when a fork was killed
+            if (state.isPresent() && !hasLiveLeases(directory, mySqlOptions)) {
+                log.warn("Shared MySQL server on port %s has no live leases, stopping it and starting a new one", state.get().getPort());
+                discard(directory);
+                shutdown(state.get(), mySqlOptions);
+                state = Optional.empty();
+            }
+            if (!state.isPresent()) {
+                AbstractEmbeddedMySql server = serverFactory.call();
+                try {
+                    state = Optional.of(new SharedState(
+                            server.getPort(),
+                            server.getPid(),
+                            server.getServerDirectory(),
+                            Paths.get(server.getSocketDirectory())));
+                    state.get().write(directory);
+                }
+                catch (IOException | RuntimeException e) {
+                    server.close();
+                    throw e;
+                }
+                ownedServer = Optional.of(server);
+                log.info("Started shared MySQL server on port %s", server.getPort());
+            }
+            else {
+                // the expired leases were discarded above, so these are the names of the running attachments
+                Set<String> used = getClaims(directory);
+                List<String> conflicts = claims.stream()
+                        .filter(used::contains)
+                        .collect(toImmutableList());
+                checkState(conflicts.isEmpty(), "Shared MySQL server on port %s is used by another attachment with the same %s, use other names or a MySqlServerPool", state.get().getPort(), conflicts);
+                log.info("Attaching to shared MySQL server on port %s", state.get().getPort());
+            }
+
+            Path leaseFile = directory.resolve("leases").resolve(UUID.randomUUID().toString());
+            write(leaseFile, claims, UTF_8);
+            return new SharedEmbeddedMySql(mySqlOptions, directory, state.get(), leaseFile, ownedServer, succinctNanos(attach.elapsed(NANOSECONDS)));
+        });
+
+        // an earlier attachment, or a fork that was killed, may have left the user with another password
+        try (Connection connection = attached.getMySqlDatabase()) {
+            MySqlProvisioning.builder()
+                    .dropUser(user)
+                    .build()
+                    .execute(connection);
+        }
+        catch (SQLException | RuntimeException e) {
+            attached.close();
+            throw e;
+        }
+        return attached;
+    }
+
+    @Override
+    public int getPort()
+    {
+        return state.getPort();
+    }
+
+    @Override
+    public MySqlOptions getMySqlOptions()
+    {
+        return mySqlOptions;
+    }
+
+    @Override
+    public StartupStats getStartupStats()
+    {
+        return startupStats;
+    }
+
+    @Override
+    public boolean isUsingUnixSocket()
+    {
+        return useUnixSocket;
+    }
+
+    @Override
+    public Optional<DataSize> getResidentMemory()
+    {
+        if (!state.getPid().isPresent()) {
+            return Optional.empty();
+        }
+        return ProcFileSystem.getResidentMemory(state.getPid().getAsLong());
+    }
+
+    @Override
+    public RuntimeStats getRuntimeStats()
+            throws SQLException
+    {
+        try (Connection connection = getMySqlDatabase()) {
+            return AbstractEmbeddedMySql.collectRuntimeStats(connection, state.getPid(), state.getServerDirectory().resolve("data"));
+        }
+    }
+
+    // only the JVM that started the server samples it
+    @Override
+    public List<RuntimeStats> getRuntimeStatsHistory()
+    {
+        return ownedServer
+                .map(AbstractEmbeddedMySql::getRuntimeStatsHistory)
+                .orElse(ImmutableList.of());
+    }
+
+    @Override
+    public Connection getMySqlDatabase()
+            throws SQLException
+    {
+        return rootDataSource.getConnection();
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+        heartbeat.cancel(false);
+        rootDataSource.close();
+
+        try {
+            withLock(directory, () -> {
+                deleteIfExists(leaseFile);
+                if (hasLiveLeases(directory, mySqlOptions)) {
+                    // the server keeps running for the other JVMs, even if this one started it
+                    return null;
+                }
+
+                // remove the state first, so that a failed shutdown starts a new server next time
+                discard(directory);
+                if (ownedServer.isPresent()) {
+                    ownedServer.get().close();
+                }
+                else {
+                    shutdown(state, mySqlOptions);
+                }
+                return null;
+            });
+        }
+        catch (Exception e) {
+            log.error(e, "Failed to release shared MySQL server on port %s", state.getPort());
+        }
+        finally {
+            if (useUnixSocket) {
+                UnixDomainSockets.unregister(state.getPort());
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("serverDirectory", state.getServerDirectory())
+                .add("port", state.getPort())
+                .add("owner", ownedServer.isPresent())
+                .toString();
+    }
+
+    private String getRootJdbcUrl()
+    {
+        return AbstractEmbeddedMySql.getJdbcUrl(state.getPort(), "root", "mysql", useUnixSocket);
+    }
+
+    private void renewLease()
+    {
+        try {
+            setLastModifiedTime(leaseFile, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException e) {
+            log.warn(e, "Failed to renew lease %s", leaseFile);
+        }
+    }
+
+    private static boolean hasLiveLeases(Path directory, MySqlOptions mySqlOptions)
+            throws IOException
+    {
+        long expired = System.currentTimeMillis() - mySqlOptions.getSharedLeaseTimeout().toMillis();
+        boolean live = false;
+        try (DirectoryStream<Path> leases = newDirectoryStream(directory.resolve("leases"))) {
+            for (Path lease : leases) {
+                if (getLastModifiedTime(lease).toMillis() >= expired) {
+                    live = true;
+                }
+                else {
+                    log.warn("Discarding expired lease %s", lease);
+                    deleteIfExists(lease);
+                }
+            }
+        }
+        return live;
+    }
+
+    private static Set<String> getClaims(Path directory)
+            throws IOException
+    {
+        ImmutableSet.Builder<String> claims = ImmutableSet.builder();
+        try (DirectoryStream<Path> leases = newDirectoryStream(directory.resolve("leases"))) {
+            for (Path lease : leases) {
+                claims.addAll(readAllLines(lease, UTF_8));
+            }
+        }
+        return claims.build();
+    }
+
+    private static void shutdown(SharedState state, MySqlOptions mySqlOptions)
+    {
+        // the process belongs to another JVM, so it can only be stopped with a statement
+        try (Connection connection = DriverManager.getConnection(AbstractEmbeddedMySql.getJdbcUrl(state.getPort(), "root", "mysql", false));
+                Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        catch (SQLException e) {
+            log.warn(e, "SHUTDOWN failed for shared MySQL server on port %s", state.getPort());
+            return;
+        }
+
+        long start = System.nanoTime();
+        while (isRunning(state)) {
+            if (Duration.nanosSince(start).compareTo(mySqlOptions.getShutdownWait()) > 0) {
+                log.error("mysqld is still running in %s", state.getServerDirectory());
+                return;
+            }
+            try {
+                Thread.sleep(SHUTDOWN_PROBE_INTERVAL_MILLIS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        switch (mySqlOptions.getDirectoryCleanup()) {
+            case DELETE:
+                DirectoryCleaner.delete(state.getServerDirectory());
+                break;
+            case DELETE_ASYNC:
+                DirectoryCleaner.deleteAsync(state.getServerDirectory());
+                break;
+            case RETAIN:
+                log.info("Retaining %s", state.getServerDirectory());
+                break;
+        }
+    }
+
+    private static boolean isReady(SharedState state)
+    {
+        try (Connection connection = DriverManager.getConnection(AbstractEmbeddedMySql.getJdbcUrl(state.getPort(), "root", "mysql", false));
+                Statement statement = connection.createStatement()) {
+            statement.execute("SELECT 1");
+            return true;
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static boolean isRunning(SharedState state)
+    {
+        // the listener is closed before mysqld has finished writing, so prefer the process when the platform reports it
+        if (state.getPid().isPresent() && isDirectory(Paths.get("/proc"))) {
+            return exists(Paths.get("/proc", String.valueOf(state.getPid().getAsLong())));
+        }
+        try (SocketChannel channel = SocketChannel.open()) {
+            return channel.connect(new InetSocketAddress("localhost", state.getPort()));
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void discard(Path directory)
+            throws IOException
+    {
+        deleteIfExists(directory.resolve("server.properties"));
+        try (DirectoryStream<Path> leases = newDirectoryStream(directory.resolve("leases"))) {
+            for (Path lease : leases) {
+                deleteIfExists(lease);
+            }
+        }
+    }
+
+    private static String getKey(String name, MySqlOptions mySqlOptions)
+    {
+        StringBuilder key = new StringBuilder(name)
+                .append('\0').append(mySqlOptions.getProfile())
+                .append('\0').append(mySqlOptions.isRowBinaryLog())
+                .append('\0').append(mySqlOptions.isStatementDigests());
+        mySqlOptions.getDataset().ifPresent(dataset -> key.append('\0').append(dataset.getName()));
+        for (String argument : mySqlOptions.getServerArguments()) {
+            key.append('\0').append(argument);
+        }
+        return sha256().hashString(key, UTF_8).toString();
+    }
+
+    private static <T> T withLock(Path directory, Callable<T> callable)
+            throws Exception
+    {
+        // file locks are held by the JVM, so threads in this JVM must be serialized separately
+        synchronized (SharedEmbeddedMySql.class) {
+            try (FileChannel channel = FileChannel.open(directory.resolve("lock"), CREATE, WRITE);
+                    FileLock ignored = channel.lock()) {
+                return callable.call();
+            }
+        }
+    }
+
+    private static Duration zero()
+    {
+        return new Duration(0, NANOSECONDS);
+    }
+
+    private static class SharedState
+    {
+        private final int port;
+        private final OptionalLong pid;
+        private final Path serverDirectory;
+        private final Path socketFile;
+
+        public SharedState(int port, OptionalLong pid, Path serverDirectory, Path socketFile)
+        {
+            this.port = port;
+            this.pid = requireNonNull(pid, "pid is null");
+            this.serverDirectory = requireNonNull(serverDirectory, "serverDirectory is null");
+            this.socketFile = requireNonNull(socketFile, "socketFile is null");
+        }
+
+        public static Optional<SharedState> read(Path directory)
+                throws IOException
+        {
+            Path file = directory.resolve("server.properties");
+            if (!exists(file)) {
+                return Optional.empty();
+            }
+            Properties properties = new Properties();
+            try (InputStream in = newInputStream(file)) {
+                properties.load(in);
+            }
+            try {
+                String pid = properties.getProperty("pid", "");
+                return Optional.of(new SharedState(
+                        Integer.parseInt(properties.getProperty("port")),
+                        pid.isEmpty() ? OptionalLong.empty() : OptionalLong.of(Long.parseLong(pid)),
+                        Paths.get(properties.getProperty("serverDirectory")),
+                        Paths.get(properties.getProperty("socketFile"))));
+            }
+            catch (NumberFormatException | NullPointerException e) {
+                log.warn("Ignoring invalid state file %s", file);
+                return Optional.empty();
+            }
+        }
+
+        public void write(Path directory)
+                throws IOException
+        {
+            Properties properties = new Properties();
+            properties.setProperty("port", String.valueOf(port));
+            properties.setProperty("pid", pid.isPresent() ? String.valueOf(pid.getAsLong()) : "");
+            properties.setProperty("serverDirectory", serverDirectory.toString());
+            properties.setProperty("socketFile", socketFile.toString());
+
+            // replace the file atomically, so a JVM that exits while writing never leaves a partial file
+            Path staging = directory.resolve("server.properties.tmp");
+            try (OutputStream out = newOutputStream(staging)) {
+                properties.store(out, "testing-mysql-server shared server");
+            }
+            move(staging, directory.resolve("server.properties"), ATOMIC_MOVE);
+        }
+
+        public int getPort()
+        {
+            return port;
+        }
+
+        public OptionalLong getPid()
+        {
+            return pid;
+        }
+
+        public Path getServerDirectory()
+        {
+            return serverDirectory;
+        }
+
+        public Path getSocketFile()
+        {
+            return socketFile;
+        }
+    }
+}
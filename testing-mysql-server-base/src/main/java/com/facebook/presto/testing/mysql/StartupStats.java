@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import io.airlift.units.Duration;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static io.airlift.units.Duration.succinctNanos;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public final class StartupStats
+{
+    private final Duration archiveExtraction;
+    private final Duration initialization;
+    private final Duration processLaunch;
+    private final Duration firstConnection;
+    private final Duration provisioning;
+
+    public StartupStats(
+            Duration archiveExtraction,
+            Duration initialization,
+            Duration processLaunch,
+            Duration firstConnection,
+            Duration provisioning)
+    {
+        this.archiveExtraction = requireNonNull(archiveExtraction, "archiveExtraction is null");
+        this.initialization = requireNonNull(initialization, "initialization is null");
+        this.processLaunch = requireNonNull(processLaunch, "processLaunch is null");
+        this.firstConnection = requireNonNull(firstConnection, "firstConnection is null");
+        this.provisioning = requireNonNull(provisioning, "provisioning is null");
+    }
+
+    // zero when the distribution was already cached
+    public Duration getArchiveExtraction()
+    {
+        return archiveExtraction;
+    }
+
+    public Duration getInitialization()
+    {
+        return initialization;
+    }
+
+    // time from launching mysqld until it reported it is ready or accepted a connection
+    public Duration getProcessLaunch()
+    {
+        return processLaunch;
+    }
+
+    public Duration getFirstConnection()
+    {
+        return firstConnection;
+    }
+
+    public Duration getProvisioning()
+    {
+        return provisioning;
+    }
+
+    public Duration getTotal()
+    {
+        return succinctNanos(archiveExtraction.roundTo(NANOSECONDS) +
+                initialization.roundTo(NANOSECONDS) +
+                processLaunch.roundTo(NANOSECONDS) +
+                firstConnection.roundTo(NANOSECONDS) +
+                provisioning.roundTo(NANOSECONDS));
+    }
+
+    public StartupStats withProvisioning(Duration provisioning)
+    {
+        return new StartupStats(archiveExtraction, initialization, processLaunch, firstConnection, provisioning);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("total", getTotal())
+                .add("archiveExtraction", archiveExtraction)
+                .add("initialization", initialization)
+                .add("processLaunch", processLaunch)
+                .add("firstConnection", firstConnection)
+                .add("provisioning", provisioning)
+                .toString();
+    }
+}
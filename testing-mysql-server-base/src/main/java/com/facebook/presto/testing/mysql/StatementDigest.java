@@ -0,0 +1,262 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.Duration.succinctNanos;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+
+// The statistics of the statements with the same normalized text, from the performance schema. The counters are
+// cumulative since the server started or the digests were reset, see AbstractTestingMySqlServer#resetStatementDigests.
+public final class StatementDigest
+{
+    // sent by Connector/J when it opens a connection, when the pool resets its session, and for the connection
+    // properties such as auto commit, so a pooled workload would otherwise show them once per connection
+    private static final List<String> DRIVER_STATEMENTS = ImmutableList.of(
+            "SELECT @@session.auto_increment_increment",
+            "SHOW VARIABLES",
+            "SHOW WARNINGS",
+            "SET NAMES",
+            "SET character_set_results",
+            "SET autocommit",
+            "SET sql_mode",
+            "SELECT @@session.tx_read_only",
+            "SELECT @@session.transaction_read_only",
+            "SELECT @@session.tx_isolation",
+            "SELECT @@session.transaction_isolation").stream()
+            .map(StatementDigest::normalize)
+            .collect(toImmutableList());
+
+    private final Optional<String> schema;
+    private final String digest;
+    private final String digestText;
+    private final long count;
+    private final Duration totalLatency;
+    private final Duration averageLatency;
+    private final Optional<Duration> p95Latency;
+    private final Duration maxLatency;
+    private final long rowsExamined;
+    private final long rowsSent;
+    private final long temporaryTables;
+    private final long temporaryDiskTables;
+    private final long noIndexUsed;
+
+    public StatementDigest(
+            Optional<String> schema,
+            String digest,
+            String digestText,
+            long count,
+            Duration totalLatency,
+            Duration averageLatency,
+            Optional<Duration> p95Latency,
+            Duration maxLatency,
+            long rowsExamined,
+            long rowsSent,
+            long temporaryTables,
+            long temporaryDiskTables,
+            long noIndexUsed)
+    {
+        this.schema = requireNonNull(schema, "schema is null");
+        this.digest = requireNonNull(digest, "digest is null");
+        this.digestText = requireNonNull(digestText, "digestText is null");
+        this.count = count;
+        this.totalLatency = requireNonNull(totalLatency, "totalLatency is null");
+        this.averageLatency = requireNonNull(averageLatency, "averageLatency is null");
+        this.p95Latency = requireNonNull(p95Latency, "p95Latency is null");
+        this.maxLatency = requireNonNull(maxLatency, "maxLatency is null");
+        this.rowsExamined = rowsExamined;
+        this.rowsSent = rowsSent;
+        this.temporaryTables = temporaryTables;
+        this.temporaryDiskTables = temporaryDiskTables;
+        this.noIndexUsed = noIndexUsed;
+    }
+
+    // the digests that are most expensive in total first, without the statements of the driver; the root connections,
+    // which run this query, are not instrumented, see AbstractEmbeddedMySql
+    static List<StatementDigest> read(Connection connection)
+            throws SQLException
+    {
+        ImmutableList.Builder<StatementDigest> digests = ImmutableList.builder();
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("" +
+                        "SELECT * FROM performance_schema.events_statements_summary_by_digest\n" +
+                        "WHERE DIGEST IS NOT NULL\n" +
+                        "ORDER BY SUM_TIMER_WAIT DESC")) {
+            boolean hasQuantiles = hasColumn(resultSet.getMetaData(), "QUANTILE_95");
+            while (resultSet.next()) {
+                if (isDriverStatement(resultSet.getString("DIGEST_TEXT"))) {
+                    continue;
+                }
+                digests.add(new StatementDigest(
+                        Optional.ofNullable(resultSet.getString("SCHEMA_NAME")),
+                        resultSet.getString("DIGEST"),
+                        resultSet.getString("DIGEST_TEXT"),
+                        resultSet.getLong("COUNT_STAR"),
+                        getTimer(resultSet, "SUM_TIMER_WAIT"),
+                        getTimer(resultSet, "AVG_TIMER_WAIT"),
+                        hasQuantiles ? Optional.of(getTimer(resultSet, "QUANTILE_95")) : Optional.empty(),
+                        getTimer(resultSet, "MAX_TIMER_WAIT"),
+                        resultSet.getLong("SUM_ROWS_EXAMINED"),
+                        resultSet.getLong("SUM_ROWS_SENT"),
+                        resultSet.getLong("SUM_CREATED_TMP_TABLES"),
+                        resultSet.getLong("SUM_CREATED_TMP_DISK_TABLES"),
+                        resultSet.getLong("SUM_NO_INDEX_USED")));
+            }
+        }
+        return digests.build();
+    }
+
+    static boolean isDriverStatement(String digestText)
+    {
+        String statement = normalize(digestText);
+        return DRIVER_STATEMENTS.stream().anyMatch(statement::startsWith);
+    }
+
+    // the digest text quotes identifiers and spaces tokens differently in each version
+    private static String normalize(String text)
+    {
+        return text.replaceAll("[`\\s]", "").toUpperCase(ENGLISH);
+    }
+
+    // also resets the latency histograms of MySQL 8
+    static void reset(Connection connection)
+            throws SQLException
+    {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE performance_schema.events_statements_summary_by_digest");
+        }
+    }
+
+    private static boolean hasColumn(ResultSetMetaData metadata, String name)
+            throws SQLException
+    {
+        for (int column = 1; column <= metadata.getColumnCount(); column++) {
+            if (metadata.getColumnLabel(column).equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the timers are in picoseconds
+    private static Duration getTimer(ResultSet resultSet, String column)
+            throws SQLException
+    {
+        return succinctNanos(resultSet.getLong(column) / 1000);
+    }
+
+    // the default database of the statements
+    public Optional<String> getSchema()
+    {
+        return schema;
+    }
+
+    public String getDigest()
+    {
+        return digest;
+    }
+
+    // the statement text with the literals replaced by ?
+    public String getDigestText()
+    {
+        return digestText;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public Duration getTotalLatency()
+    {
+        return totalLatency;
+    }
+
+    public Duration getAverageLatency()
+    {
+        return averageLatency;
+    }
+
+    // only available with MySQL 8, estimated from the latency histogram of the digest
+    public Optional<Duration> getP95Latency()
+    {
+        return p95Latency;
+    }
+
+    public Duration getMaxLatency()
+    {
+        return maxLatency;
+    }
+
+    public long getRowsExamined()
+    {
+        return rowsExamined;
+    }
+
+    public long getRowsSent()
+    {
+        return rowsSent;
+    }
+
+    // internal temporary tables, for example for GROUP BY, DISTINCT or UNION
+    public long getTemporaryTables()
+    {
+        return temporaryTables;
+    }
+
+    // temporary tables that did not fit in memory
+    public long getTemporaryDiskTables()
+    {
+        return temporaryDiskTables;
+    }
+
+    // executions that scanned a table without an index, such as full table scans
+    public long getNoIndexUsed()
+    {
+        return noIndexUsed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("schema", schema.orElse(null))
+                .add("digestText", digestText)
+                .add("count", count)
+                .add("totalLatency", totalLatency)
+                .add("averageLatency", averageLatency)
+                .add("p95Latency", p95Latency.orElse(null))
+                .add("maxLatency", maxLatency)
+                .add("rowsExamined", rowsExamined)
+                .add("rowsSent", rowsSent)
+                .add("temporaryTables", temporaryTables)
+                .add("temporaryDiskTables", temporaryDiskTables)
+                .add("noIndexUsed", noIndexUsed)
+                .omitNullValues()
+                .toString();
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.BaseEncoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.nCopies;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+
+// Loads rows with LOAD DATA LOCAL INFILE, streaming them to the driver as tab separated text,
+// or with multi-row INSERT statements when the driver or server does not allow local infile.
+public final class TableLoader
+{
+    private static final Logger log = Logger.get(TableLoader.class);
+
+    private static final Set<String> BINARY_TYPES = ImmutableSet.of("binary", "varbinary", "tinyblob", "blob", "mediumblob", "longblob");
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+    private static final int MAX_PARAMETERS = 65535;
+    private static final int MAX_REPORTED_WARNINGS = 10;
+
+    private final Connection connection;
+    private final String database;
+    private final String table;
+    private final List<Column> columns;
+
+    private TableLoader(Connection connection, String database, String table, List<Column> columns)
+    {
+        this.connection = requireNonNull(connection, "connection is null");
+        this.database = requireNonNull(database, "database is null");
+        this.table = requireNonNull(table, "table is null");
+        this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
+    }
+
+    public static long loadTable(Connection connection, String database, String table, Iterator<Object[]> rows)
+            throws SQLException
+    {
+        List<Column> columns = listColumns(connection, database, table);
+        if (columns.isEmpty()) {
+            throw new SQLException(format("Table not found: %s.%s", database, table));
+        }
+        TableLoader loader = new TableLoader(connection, database, table, columns);
+
+        try (Statement statement = connection.createStatement()) {
+            if (isLocalInfileEnabled(statement)) {
+                RowInputStream in = new RowInputStream(rows, columns);
+                if (setLocalInfileInputStream(statement, in)) {
+                    return loader.loadData(statement, in);
+                }
+            }
+        }
+        return loader.insert(rows);
+    }
+
+    private long loadData(Statement statement, RowInputStream in)
+            throws SQLException
+    {
+        List<String> targets = new ArrayList<>();
+        List<String> assignments = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (column.isBinary()) {
+                // binary values are sent hex encoded, so the file can use a text character set
+                targets.add("@v" + i);
+                assignments.add(format("%s = UNHEX(@v%s)", quote(column.getName()), i));
+            }
+            else {
+                targets.add(quote(column.getName()));
+            }
+        }
+
+        String sql = format(
+                "LOAD DATA LOCAL INFILE 'rows.tsv' INTO TABLE %s.%s CHARACTER SET utf8mb4 (%s)",
+                quote(database),
+                quote(table),
+                Joiner.on(", ").join(targets));
+        if (!assignments.isEmpty()) {
+            sql += " SET " + Joiner.on(", ").join(assignments);
+        }
+
+        log.debug("Executing: %s", sql);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            long loaded = statement.executeUpdate(sql);
+
+            // LOAD DATA LOCAL skips rows that fail and converts invalid values with a warning, where INSERT fails in strict mode
+            if (loaded != in.getRowCount()) {
+                throw new SQLException(format("Loaded %s of %s rows into %s.%s", loaded, in.getRowCount(), database, table));
+            }
+            List<String> warnings = getWarnings(statement);
+            if (!warnings.isEmpty()) {
+                throw new SQLException(format("Loading %s.%s failed: %s", database, table, Joiner.on("; ").join(warnings)));
+            }
+            connection.commit();
+            return loaded;
+        }
+        catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static List<String> getWarnings(Statement statement)
+            throws SQLException
+    {
+        ImmutableList.Builder<String> warnings = ImmutableList.builder();
+        try (ResultSet resultSet = statement.executeQuery("SHOW WARNINGS LIMIT " + MAX_REPORTED_WARNINGS)) {
+            while (resultSet.next()) {
+                if (!resultSet.getString("Level").equals("Note")) {
+                    warnings.add(resultSet.getString("Message"));
+                }
+            }
+        }
+        return warnings.build();
+    }
+
+    private long insert(Iterator<Object[]> rows)
+            throws SQLException
+    {
+        int rowsPerStatement = Math.max(1, Math.min(MAX_ROWS_PER_INSERT, MAX_PARAMETERS / columns.size()));
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(insertSql(rowsPerStatement))) {
+            long loaded = 0;
+            List<Object[]> batch = new ArrayList<>(rowsPerStatement);
+            while (rows.hasNext()) {
+                batch.add(checkRow(rows.next(), columns));
+                if (batch.size() == rowsPerStatement) {
+                    loaded += executeInsert(statement, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                try (PreparedStatement last = connection.prepareStatement(insertSql(batch.size()))) {
+                    loaded += executeInsert(last, batch);
+                }
+            }
+            connection.commit();
+            return loaded;
+        }
+        catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private String insertSql(int rowCount)
+    {
+        String row = "(" + Joiner.on(", ").join(nCopies(columns.size(), "?")) + ")";
+        return format(
+                "INSERT INTO %s.%s (%s) VALUES %s",
+                quote(database),
+                quote(table),
+                Joiner.on(", ").join(columns.stream().map(column -> quote(column.getName())).iterator()),
+                Joiner.on(", ").join(nCopies(rowCount, row)));
+    }
+
+    private static long executeInsert(PreparedStatement statement, List<Object[]> rows)
+            throws SQLException
+    {
+        int parameter = 1;
+        for (Object[] row : rows) {
+            for (Object value : row) {
+                statement.setObject(parameter, value);
+                parameter++;
+            }
+        }
+        return statement.executeUpdate();
+    }
+
+    private static Object[] checkRow(Object[] row, List<Column> columns)
+    {
+        requireNonNull(row, "row is null");
+        checkArgument(row.length == columns.size(), "expected %s values, but row has %s", columns.size(), row.length);
+        return row;
+    }
+
+    private static boolean isLocalInfileEnabled(Statement statement)
+            throws SQLException
+    {
+        // enabled by the server start arguments, but a server may be started with other arguments
+        try (ResultSet resultSet = statement.executeQuery("SELECT @@local_infile")) {
+            if (resultSet.next() && resultSet.getBoolean(1)) {
+                return true;
+            }
+        }
+        log.debug("Local infile is disabled on the server, falling back to INSERT");
+        return false;
+    }
+
+    private static boolean setLocalInfileInputStream(Statement statement, InputStream in)
+    {
+        // provided by both the 5.1 and 8.0 drivers, but declared on driver specific interfaces
+        try {
+            Method method = statement.getClass().getMethod("setLocalInfileInputStream", InputStream.class);
+            method.invoke(statement, in);
+            return true;
+        }
+        catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            log.debug(e, "Driver does not support streaming local infile, falling back to INSERT");
+            return false;
+        }
+    }
+
+    private static List<Column> listColumns(Connection connection, String database, String table)
+            throws SQLException
+    {
+        ImmutableList.Builder<Column> columns = ImmutableList.builder();
+        try (PreparedStatement query = connection.prepareStatement("" +
+                "SELECT column_name, data_type FROM information_schema.columns " +
+                "WHERE table_schema = ? AND table_name = ? AND extra NOT IN ('VIRTUAL GENERATED', 'STORED GENERATED') " +
+                "ORDER BY ordinal_position")) {
+            query.setString(1, database);
+            query.setString(2, table);
+            try (ResultSet resultSet = query.executeQuery()) {
+                while (resultSet.next()) {
+                    columns.add(new Column(resultSet.getString(1), BINARY_TYPES.contains(resultSet.getString(2).toLowerCase(ENGLISH))));
+                }
+            }
+        }
+        return columns.build();
+    }
+
+    private static String quote(String identifier)
+    {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    private static class Column
+    {
+        private final String name;
+        private final boolean binary;
+
+        public Column(String name, boolean binary)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.binary = binary;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public boolean isBinary()
+        {
+            return binary;
+        }
+    }
+
+    // Encodes rows lazily in the default LOAD DATA format: tab separated, newline terminated, backslash escaped.
+    private static class RowInputStream
+            extends InputStream
+    {
+        private static final int TARGET_BUFFER_SIZE = 64 * 1024;
+
+        private final Iterator<Object[]> rows;
+        private final List<Column> columns;
+        private final Buffer buffer = new Buffer();
+        private int position;
+        private long rowCount;
+
+        public RowInputStream(Iterator<Object[]> rows, List<Column> columns)
+        {
+            this.rows = requireNonNull(rows, "rows is null");
+            this.columns = requireNonNull(columns, "columns is null");
+        }
+
+        public long getRowCount()
+        {
+            return rowCount;
+        }
+
+        @Override
+        public int read()
+        {
+            if (!fill()) {
+                return -1;
+            }
+            int value = buffer.bytes()[position] & 0xFF;
+            position++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.size() - position);
+            System.arraycopy(buffer.bytes(), position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill()
+        {
+            if (position < buffer.size()) {
+                return true;
+            }
+            buffer.reset();
+            position = 0;
+            while (buffer.size() < TARGET_BUFFER_SIZE && rows.hasNext()) {
+                writeRow(checkRow(rows.next(), columns));
+                rowCount++;
+            }
+            return buffer.size() > 0;
+        }
+
+        private void writeRow(Object[] row)
+        {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    buffer.write('\t');
+                }
+                writeValue(row[i], columns.get(i).isBinary());
+            }
+            buffer.write('\n');
+        }
+
+        private void writeValue(Object value, boolean binary)
+        {
+            if (value == null) {
+                buffer.write('\\');
+                buffer.write('N');
+                return;
+            }
+
+            if (binary) {
+                byte[] bytes = (value instanceof byte[]) ? (byte[]) value : value.toString().getBytes(UTF_8);
+                writeRaw(BaseEncoding.base16().encode(bytes).getBytes(UTF_8));
+                return;
+            }
+
+            String text;
+            if (value instanceof byte[]) {
+                text = new String((byte[]) value, UTF_8);
+            }
+            else if (value instanceof Boolean) {
+                text = ((Boolean) value) ? "1" : "0";
+            }
+            else if (value instanceof BigDecimal) {
+                text = ((BigDecimal) value).toPlainString();
+            }
+            else {
+                text = value.toString();
+            }
+
+            for (byte b : text.getBytes(UTF_8)) {
+                switch (b) {
+                    case '\\':
+                        writeEscaped('\\');
+                        break;
+                    case '\t':
+                        writeEscaped('t');
+                        break;
+                    case '\n':
+                        writeEscaped('n');
+                        break;
+                    case '\r':
+                        writeEscaped('r');
+                        break;
+                    case 0:
+                        writeEscaped('0');
+                        break;
+                    default:
+                        buffer.write(b);
+                }
+            }
+        }
+
+        private void writeEscaped(char value)
+        {
+            buffer.write('\\');
+            buffer.write(value);
+        }
+
+        private void writeRaw(byte[] bytes)
+        {
+            buffer.write(bytes, 0, bytes.length);
+        }
+    }
+
+    // exposes the internal array, so reads do not copy the encoded rows
+    private static class Buffer
+            extends ByteArrayOutputStream
+    {
+        public byte[] bytes()
+        {
+            return buf;
+        }
+    }
+}
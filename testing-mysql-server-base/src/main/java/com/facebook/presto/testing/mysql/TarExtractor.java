@@ -0,0 +1,423 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createLink;
+import static java.nio.file.Files.createSymbolicLink;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getFileStore;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.setPosixFilePermissions;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// Extracts ustar and GNU tar archives as written by the repack scripts, including GNU and pax long names.
+// Device files, FIFOs and sparse files are not supported.
+final class TarExtractor
+{
+    private static final int BLOCK_SIZE = 512;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path target;
+    private final Path realTarget;
+    private final boolean posix;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final List<DirectoryAttributes> directories = new ArrayList<>();
+
+    private TarExtractor(Path target)
+            throws IOException
+    {
+        this.target = target.toAbsolutePath().normalize();
+        this.realTarget = this.target.toRealPath();
+        this.posix = getFileStore(this.target).supportsFileAttributeView("posix");
+    }
+
+    public static void extractTarGz(InputStream in, Path target)
+            throws IOException
+    {
+        extractTar(new GZIPInputStream(in, BUFFER_SIZE), target);
+    }
+
+    public static void extractTar(InputStream in, Path target)
+            throws IOException
+    {
+        createDirectories(target);
+        new TarExtractor(target).extract(in);
+    }
+
+    private void extract(InputStream in)
+            throws IOException
+    {
+        byte[] header = new byte[BLOCK_SIZE];
+        String longName = null;
+        String longLinkName = null;
+
+        while (true) {
+            if (!readBlock(in, header)) {
+                break;
+            }
+            if (isZero(header)) {
+                // end of archive
+                break;
+            }
+            verifyChecksum(header);
+
+            char type = (char) header[156];
+            long size = parseNumber(header, 124, 12);
+
+            if (type == 'L') {
+                longName = readString(in, size);
+                continue;
+            }
+            if (type == 'K') {
+                longLinkName = readString(in, size);
+                continue;
+            }
+            if (type == 'x') {
+                PaxHeaders pax = PaxHeaders.parse(readString(in, size));
+                if (pax.path != null) {
+                    longName = pax.path;
+                }
+                if (pax.linkPath != null) {
+                    longLinkName = pax.linkPath;
+                }
+                continue;
+            }
+            if (type == 'g') {
+                skip(in, size);
+                continue;
+            }
+
+            String name = (longName != null) ? longName : headerName(header);
+            String linkName = (longLinkName != null) ? longLinkName : parseString(header, 157, 100);
+            longName = null;
+            longLinkName = null;
+
+            int mode = (int) parseNumber(header, 100, 8);
+            FileTime modified = FileTime.from(parseNumber(header, 136, 12), SECONDS);
+            Path path = resolve(name);
+
+            switch (type) {
+                case '0':
+                case '\0':
+                case '7':
+                    createDirectoriesInTarget(path.getParent(), name);
+                    writeFile(in, path, size);
+                    setAttributes(path, mode, modified);
+                    break;
+                case '5':
+                    createDirectoriesInTarget(path, name);
+                    // applied at the end, so read-only directories can still be populated
+                    directories.add(new DirectoryAttributes(path, mode, modified));
+                    break;
+                case '1':
+                    createDirectoriesInTarget(path.getParent(), name);
+                    Path existing = resolve(linkName);
+                    checkInsideTarget(existing, name);
+                    try {
+                        createLink(path, existing);
+                    }
+                    catch (UnsupportedOperationException | IOException e) {
+                        copy(existing, path);
+                    }
+                    skip(in, size);
+                    break;
+                case '2':
+                    createDirectoriesInTarget(path.getParent(), name);
+                    if (!path.getParent().resolve(linkName).normalize().startsWith(target)) {
+                        throw new IOException("Archive entry links outside of the target directory: " + name + " -> " + linkName);
+                    }
+                    createSymbolicLink(path, path.getFileSystem().getPath(linkName));
+                    skip(in, size);
+                    break;
+                default:
+                    throw new IOException(String.format("Unsupported entry type '%s' for %s", type, name));
+            }
+        }
+
+        for (DirectoryAttributes directory : directories) {
+            setAttributes(directory.path, directory.mode, directory.modified);
+        }
+    }
+
+    private void writeFile(InputStream in, Path path, long size)
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE)) {
+            long remaining = size;
+            while (remaining > 0) {
+                int length = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (length < 0) {
+                    throw new EOFException("Unexpected end of archive in " + path);
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                remaining -= length;
+            }
+        }
+        ByteStreams.skipFully(in, padding(size));
+    }
+
+    private void setAttributes(Path path, int mode, FileTime modified)
+            throws IOException
+    {
+        if (posix) {
+            setPosixFilePermissions(path, toPermissions(mode));
+        }
+        else if ((mode & 0100) != 0) {
+            path.toFile().setExecutable(true);
+        }
+        setLastModifiedTime(path, modified);
+    }
+
+    private Path resolve(String name)
+            throws IOException
+    {
+        Path path = target.resolve(name).normalize();
+        if (!path.startsWith(target)) {
+            throw new IOException("Archive entry is outside of the target directory: " + name);
+        }
+        return path;
+    }
+
+    // resolve() only checks the entry name, so also check where the links extracted so far point, before anything is written
+    private void createDirectoriesInTarget(Path directory, String name)
+            throws IOException
+    {
+        Path existing = directory;
+        while (!exists(existing)) {
+            existing = existing.getParent();
+        }
+        checkInsideTarget(existing, name);
+        createDirectories(directory);
+    }
+
+    private void checkInsideTarget(Path path, String name)
+            throws IOException
+    {
+        if (!path.toRealPath().startsWith(realTarget)) {
+            throw new IOException("Archive entry is outside of the target directory: " + name);
+        }
+    }
+
+    private static String readString(InputStream in, long size)
+            throws IOException
+    {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Archive header is too large: " + size);
+        }
+        byte[] bytes = new byte[(int) size];
+        ByteStreams.readFully(in, bytes);
+        ByteStreams.skipFully(in, padding(size));
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] == 0) {
+            length--;
+        }
+        return new String(bytes, 0, length, UTF_8);
+    }
+
+    private static void skip(InputStream in, long size)
+            throws IOException
+    {
+        ByteStreams.skipFully(in, size + padding(size));
+    }
+
+    private static long padding(long size)
+    {
+        return (BLOCK_SIZE - (size % BLOCK_SIZE)) % BLOCK_SIZE;
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block)
+            throws IOException
+    {
+        int read = ByteStreams.read(in, block, 0, block.length);
+        if (read == 0) {
+            return false;
+        }
+        if (read != block.length) {
+            throw new EOFException("Truncated archive header");
+        }
+        return true;
+    }
+
+    private static boolean isZero(byte[] block)
+    {
+        for (byte value : block) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void verifyChecksum(byte[] header)
+            throws IOException
+    {
+        long expected = parseNumber(header, 148, 8);
+        long actual = 0;
+        for (int i = 0; i < header.length; i++) {
+            // the checksum field itself counts as spaces
+            actual += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xFF);
+        }
+        if (actual != expected) {
+            throw new IOException("Invalid archive header checksum");
+        }
+    }
+
+    private static String headerName(byte[] header)
+    {
+        String name = parseString(header, 0, 100);
+        String magic = parseString(header, 257, 6);
+        if (magic.equals("ustar")) {
+            // POSIX ustar splits long names into a prefix and a name (GNU tar uses 'ustar  ' and no prefix)
+            String prefix = parseString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private static String parseString(byte[] header, int offset, int length)
+    {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, UTF_8).trim();
+    }
+
+    private static long parseNumber(byte[] header, int offset, int length)
+            throws IOException
+    {
+        if ((header[offset] & 0x80) != 0) {
+            // GNU base-256 encoding for values that do not fit in octal
+            long value = header[offset] & 0x7F;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xFF);
+            }
+            return value;
+        }
+
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte digit = header[i];
+            if (digit == 0 || digit == ' ') {
+                if (value != 0) {
+                    break;
+                }
+                continue;
+            }
+            if (digit < '0' || digit > '7') {
+                throw new IOException("Invalid octal number in archive header");
+            }
+            value = (value << 3) + (digit - '0');
+        }
+        return value;
+    }
+
+    static Set<PosixFilePermission> toPermissions(int mode)
+    {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        PosixFilePermission[] values = PosixFilePermission.values();
+        // values are declared from OWNER_READ (0400) to OTHERS_EXECUTE (0001)
+        for (int i = 0; i < values.length; i++) {
+            if ((mode & (0400 >> i)) != 0) {
+                permissions.add(values[i]);
+            }
+        }
+        return permissions;
+    }
+
+    private static class PaxHeaders
+    {
+        private String path;
+        private String linkPath;
+
+        // records are "<length> <key>=<value>\n", where length counts the whole record in bytes
+        public static PaxHeaders parse(String headers)
+                throws IOException
+        {
+            PaxHeaders pax = new PaxHeaders();
+            byte[] bytes = headers.getBytes(UTF_8);
+            int position = 0;
+            while (position < bytes.length) {
+                int space = position;
+                while (space < bytes.length && bytes[space] != ' ') {
+                    space++;
+                }
+                int length;
+                try {
+                    length = Integer.parseInt(new String(bytes, position, space - position, UTF_8));
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("Invalid pax header", e);
+                }
+                if (length <= 0 || position + length > bytes.length) {
+                    throw new IOException("Invalid pax header");
+                }
+                String record = new String(bytes, space + 1, position + length - space - 2, UTF_8);
+                int equals = record.indexOf('=');
+                if (equals > 0) {
+                    String key = record.substring(0, equals);
+                    String value = record.substring(equals + 1);
+                    if (key.equals("path")) {
+                        pax.path = value;
+                    }
+                    else if (key.equals("linkpath")) {
+                        pax.linkPath = value;
+                    }
+                }
+                position += length;
+            }
+            return pax;
+        }
+    }
+
+    private static class DirectoryAttributes
+    {
+        private final Path path;
+        private final int mode;
+        private final FileTime modified;
+
+        public DirectoryAttributes(Path path, int mode, FileTime modified)
+        {
+            this.path = path;
+            this.mode = mode;
+            this.modified = modified;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// A source server and its replicas, all started locally from the same cached distribution and connected with GTID replication
+public class TestingMySqlCluster
+        implements Closeable
+{
+    private static final Logger log = Logger.get(TestingMySqlCluster.class);
+
+    private static final Duration DEFAULT_CATCH_UP_TIMEOUT = new Duration(30, SECONDS);
+
+    private final ReplicationDialect dialect;
+    private final AbstractTestingMySqlServer source;
+    private final List<AbstractTestingMySqlServer> replicas;
+
+    TestingMySqlCluster(ReplicationDialect dialect, int replicaCount, MySqlOptions mySqlOptions, NodeFactory nodeFactory)
+            throws Exception
+    {
+        this.dialect = requireNonNull(dialect, "dialect is null");
+        checkArgument(replicaCount > 0, "replicaCount must be positive");
+        requireNonNull(mySqlOptions, "mySqlOptions is null");
+        requireNonNull(nodeFactory, "nodeFactory is null");
+        checkArgument(!mySqlOptions.isShared(), "cluster nodes cannot be shared servers");
+
+        List<AbstractTestingMySqlServer> nodes = startNodes(replicaCount + 1, mySqlOptions, nodeFactory);
+        this.source = nodes.get(0);
+        this.replicas = ImmutableList.copyOf(nodes.subList(1, nodes.size()));
+
+        try {
+            startReplication();
+        }
+        catch (Exception e) {
+            closeAll(nodes, e);
+            throw e;
+        }
+        log.info("MySQL cluster ready: source on port %s with %s replicas", source.getPort(), replicas.size());
+    }
+
+    // the source has server id 1 and the replicas 2 and up, and the replication arguments override the profile
+    private List<AbstractTestingMySqlServer> startNodes(int count, MySqlOptions mySqlOptions, NodeFactory nodeFactory)
+            throws Exception
+    {
+        List<CompletableFuture<AbstractTestingMySqlServer>> futures = new ArrayList<>();
+        for (int serverId = 1; serverId <= count; serverId++) {
+            MySqlOptions nodeOptions = mySqlOptions.toBuilder()
+                    .setServerArguments(ImmutableList.<String>builder()
+                            .addAll(dialect.getServerArguments(serverId))
+                            .addAll(mySqlOptions.getServerArguments())
+                            .build())
+                    .build();
+            futures.add(AbstractTestingMySqlServer.startServerAsync(() -> nodeFactory.create(nodeOptions)));
+        }
+
+        List<AbstractTestingMySqlServer> nodes = new ArrayList<>();
+        Exception failure = null;
+        for (CompletableFuture<AbstractTestingMySqlServer> future : futures) {
+            try {
+                nodes.add(future.get());
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                else {
+                    failure.addSuppressed(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            // do not leak the nodes that did start
+            closeAll(nodes, failure);
+            throw failure;
+        }
+        return nodes;
+    }
+
+    private void startReplication()
+            throws SQLException, InterruptedException
+    {
+        // the nodes provisioned the same users and databases independently, which must not be replicated
+        for (AbstractTestingMySqlServer node : getNodes()) {
+            try (Connection connection = node.getRootConnection();
+                    Statement statement = connection.createStatement()) {
+                statement.execute(dialect.getResetStatement());
+            }
+        }
+
+        for (AbstractTestingMySqlServer replica : replicas) {
+            try (Connection connection = replica.getRootConnection();
+                    Statement statement = connection.createStatement()) {
+                statement.execute(dialect.getChangeSourceStatement(source.getPort(), source.getUser(), source.getPassword()));
+                statement.execute(dialect.getStartReplicaStatement());
+            }
+        }
+
+        for (AbstractTestingMySqlServer replica : replicas) {
+            waitForReplicaThreads(replica, source.getPort());
+        }
+    }
+
+    private void waitForReplicaThreads(AbstractTestingMySqlServer replica, int sourcePort)
+            throws SQLException, InterruptedException
+    {
+        long deadline = System.nanoTime() + DEFAULT_CATCH_UP_TIMEOUT.roundTo(NANOSECONDS);
+        while (true) {
+            try (Connection connection = replica.getRootConnection();
+                    Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(dialect.getReplicaStatusStatement())) {
+                if (!resultSet.next()) {
+                    throw new SQLException(format("Replica on port %s is not configured", replica.getPort()));
+                }
+                boolean ioRunning = "Yes".equals(resultSet.getString(dialect.getIoRunningColumn()));
+                boolean sqlRunning = "Yes".equals(resultSet.getString(dialect.getSqlRunningColumn()));
+                if (ioRunning && sqlRunning) {
+                    return;
+                }
+                String error = nullToEmpty(resultSet.getString("Last_IO_Error")) + nullToEmpty(resultSet.getString("Last_SQL_Error"));
+                if (!error.isEmpty() || System.nanoTime() > deadline) {
+                    throw new SQLException(format("Replica on port %s failed to connect to source on port %s: %s", replica.getPort(), sourcePort, error));
+                }
+            }
+            MILLISECONDS.sleep(100);
+        }
+    }
+
+    public AbstractTestingMySqlServer getSource()
+    {
+        return source;
+    }
+
+    public List<AbstractTestingMySqlServer> getReplicas()
+    {
+        return replicas;
+    }
+
+    public AbstractTestingMySqlServer getReplica(int index)
+    {
+        return replicas.get(index);
+    }
+
+    // empty while the replica is not connected to the source
+    public Optional<Duration> getReplicaLag(int index)
+            throws SQLException
+    {
+        try (Connection connection = getReplica(index).getRootConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(dialect.getReplicaStatusStatement())) {
+            if (!resultSet.next()) {
+                return Optional.empty();
+            }
+            long seconds = resultSet.getLong(dialect.getLagColumn());
+            if (resultSet.wasNull()) {
+                return Optional.empty();
+            }
+            return Optional.of(new Duration(seconds, SECONDS));
+        }
+    }
+
+    public void waitForReplicaCatchUp()
+            throws SQLException
+    {
+        waitForReplicaCatchUp(DEFAULT_CATCH_UP_TIMEOUT);
+    }
+
+    // waits until every replica has applied all transactions committed on the source so far
+    public void waitForReplicaCatchUp(Duration timeout)
+            throws SQLException
+    {
+        requireNonNull(timeout, "timeout is null");
+        String executed;
+        try (Connection connection = source.getRootConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT @@GLOBAL.gtid_executed")) {
+            resultSet.next();
+            executed = resultSet.getString(1);
+        }
+
+        long deadline = System.nanoTime() + timeout.roundTo(NANOSECONDS);
+        for (AbstractTestingMySqlServer replica : replicas) {
+            // a timeout of zero waits forever
+            long remaining = Math.max(NANOSECONDS.toSeconds(deadline - System.nanoTime() + SECONDS.toNanos(1) - 1), 1);
+            try (Connection connection = replica.getRootConnection();
+                    PreparedStatement statement = connection.prepareStatement("SELECT WAIT_FOR_EXECUTED_GTID_SET(?, ?)")) {
+                statement.setString(1, executed);
+                statement.setLong(2, remaining);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    if (resultSet.getInt(1) != 0) {
+                        throw new SQLException(format("Replica on port %s did not catch up with the source within %s", replica.getPort(), timeout));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try {
+            closeAll(getNodes(), null);
+        }
+        catch (Exception e) {
+            throwIfInstanceOf(e, IOException.class);
+            throwIfUnchecked(e);
+            throw new IOException(e);
+        }
+    }
+
+    private List<AbstractTestingMySqlServer> getNodes()
+    {
+        return ImmutableList.<AbstractTestingMySqlServer>builder()
+                .add(source)
+                .addAll(replicas)
+                .build();
+    }
+
+    // closes every node, and adds the failures to the given exception or throws the first one
+    private static void closeAll(List<AbstractTestingMySqlServer> nodes, Exception failure)
+            throws Exception
+    {
+        Exception exception = failure;
+        for (AbstractTestingMySqlServer node : nodes) {
+            try {
+                node.close();
+            }
+            catch (IOException | RuntimeException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+                else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (failure == null && exception != null) {
+            throw exception;
+        }
+    }
+
+    interface NodeFactory
+    {
+        AbstractTestingMySqlServer create(MySqlOptions mySqlOptions)
+                throws Exception;
+    }
+}
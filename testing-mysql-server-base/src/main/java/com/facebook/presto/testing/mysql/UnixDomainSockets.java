@@ -0,0 +1,433 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.io.Closer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.nio.channels.SelectionKey.OP_CONNECT;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+// Connects to the socket file of a running server with the unix domain socket channels added in Java 16.
+// The driver only passes the host and port to its socket factory, so servers register their socket file by port.
+final class UnixDomainSockets
+{
+    // implemented separately in each module against the driver's socket factory interface
+    public static final String SOCKET_FACTORY = "com.facebook.presto.testing.mysql.UnixSocketFactory";
+
+    private static final Map<Integer, Path> SOCKET_FILES = new ConcurrentHashMap<>();
+
+    private static final Method OPEN_CHANNEL;
+    private static final Method CREATE_ADDRESS;
+    private static final ProtocolFamily UNIX;
+
+    static {
+        Method openChannel = null;
+        Method createAddress = null;
+        ProtocolFamily unix = null;
+        try {
+            openChannel = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            createAddress = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+            unix = StandardProtocolFamily.valueOf("UNIX");
+        }
+        catch (ReflectiveOperationException | IllegalArgumentException ignored) {
+            // running on Java 15 or earlier
+        }
+        OPEN_CHANNEL = openChannel;
+        CREATE_ADDRESS = createAddress;
+        UNIX = unix;
+    }
+
+    private UnixDomainSockets() {}
+
+    public static boolean isSupported()
+    {
+        return UNIX != null;
+    }
+
+    public static void register(int port, Path socketFile)
+    {
+        SOCKET_FILES.put(port, requireNonNull(socketFile, "socketFile is null"));
+    }
+
+    public static void unregister(int port)
+    {
+        SOCKET_FILES.remove(port);
+    }
+
+    public static Optional<Path> getSocketFile(int port)
+    {
+        return Optional.ofNullable(SOCKET_FILES.get(port));
+    }
+
+    // falls back to TCP for ports without a registered socket file, e.g. servers started by another class loader
+    public static Socket connect(String host, int port, int timeoutMillis)
+            throws IOException
+    {
+        Optional<Path> socketFile = getSocketFile(port);
+        if (socketFile.isPresent() && isSupported()) {
+            return connect(socketFile.get(), timeoutMillis);
+        }
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        return socket;
+    }
+
+    // a timeout of zero waits forever, like Socket.connect()
+    public static Socket connect(Path socketFile, int timeoutMillis)
+            throws IOException
+    {
+        if (!isSupported()) {
+            throw new IOException("Unix domain sockets require Java 16 or later");
+        }
+        SocketChannel channel;
+        try {
+            channel = (SocketChannel) OPEN_CHANNEL.invoke(null, UNIX);
+        }
+        catch (ReflectiveOperationException e) {
+            throw propagate(e);
+        }
+        try {
+            // non-blocking, so connects and reads can be bounded by a selector
+            channel.configureBlocking(false);
+            if (!channel.connect((SocketAddress) CREATE_ADDRESS.invoke(null, socketFile))) {
+                try (Selector selector = Selector.open()) {
+                    channel.register(selector, OP_CONNECT);
+                    long start = System.nanoTime();
+                    while (!channel.finishConnect()) {
+                        select(selector, timeoutMillis, start, "Connect timed out: " + socketFile);
+                    }
+                }
+            }
+            return new ChannelSocket(channel);
+        }
+        catch (ReflectiveOperationException e) {
+            channel.close();
+            throw propagate(e);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // waits for the registered operation, or throws once the timeout has passed, where a timeout of zero waits forever
+    private static void select(Selector selector, int timeoutMillis, long start, String timeoutMessage)
+            throws IOException
+    {
+        long remaining = 0;
+        if (timeoutMillis > 0) {
+            remaining = timeoutMillis - NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (remaining <= 0) {
+                throw new SocketTimeoutException(timeoutMessage);
+            }
+        }
+        // select() returns immediately for an interrupted thread, which would otherwise spin
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting for the socket");
+        }
+        selector.select(remaining);
+        selector.selectedKeys().clear();
+    }
+
+    private static IOException propagate(ReflectiveOperationException e)
+            throws IOException
+    {
+        Throwable cause = (e instanceof InvocationTargetException) ? e.getCause() : e;
+        throwIfInstanceOf(cause, IOException.class);
+        throwIfUnchecked(cause);
+        return new IOException(cause);
+    }
+
+    // Adapts a connected channel to the Socket API used by the drivers. Socket options only apply to TCP and are
+    // ignored, except the read timeout. The channel is non-blocking and the streams wait on their own selector,
+    // since Channels.newInputStream() blocks writes while a read is pending and cannot time out.
+    private static class ChannelSocket
+            extends Socket
+    {
+        private final SocketChannel channel;
+        private final Selector readSelector;
+        private final Selector writeSelector;
+        private final InputStream in;
+        private final OutputStream out;
+        private volatile int timeout;
+
+        public ChannelSocket(SocketChannel channel)
+                throws IOException
+        {
+            this.channel = requireNonNull(channel, "channel is null");
+            this.readSelector = Selector.open();
+            this.writeSelector = Selector.open();
+            try {
+                channel.register(readSelector, OP_READ);
+                channel.register(writeSelector, OP_WRITE);
+            }
+            catch (IOException | RuntimeException e) {
+                readSelector.close();
+                writeSelector.close();
+                throw e;
+            }
+            this.in = new ChannelInputStream();
+            this.out = new ChannelOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream()
+        {
+            return out;
+        }
+
+        @Override
+        public InetAddress getInetAddress()
+        {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public InetAddress getLocalAddress()
+        {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress()
+        {
+            return null;
+        }
+
+        @Override
+        public SocketAddress getLocalSocketAddress()
+        {
+            return null;
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isBound()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return !channel.isOpen();
+        }
+
+        @Override
+        public boolean isInputShutdown()
+        {
+            return !channel.isOpen();
+        }
+
+        @Override
+        public boolean isOutputShutdown()
+        {
+            return !channel.isOpen();
+        }
+
+        @Override
+        public void shutdownInput()
+                throws IOException
+        {
+            channel.shutdownInput();
+        }
+
+        @Override
+        public void shutdownOutput()
+                throws IOException
+        {
+            channel.shutdownOutput();
+        }
+
+        @Override
+        public synchronized void close()
+                throws IOException
+        {
+            // closing a selector wakes up a thread waiting on it, which then fails the read or write
+            try (Closer closer = Closer.create()) {
+                closer.register(channel);
+                closer.register(readSelector);
+                closer.register(writeSelector);
+            }
+        }
+
+        @Override
+        public void setSoTimeout(int timeout)
+                throws SocketException
+        {
+            if (timeout < 0) {
+                throw new SocketException("timeout is negative");
+            }
+            this.timeout = timeout;
+        }
+
+        @Override
+        public int getSoTimeout()
+        {
+            return timeout;
+        }
+
+        @Override
+        public void setTcpNoDelay(boolean on) {}
+
+        @Override
+        public boolean getTcpNoDelay()
+        {
+            return true;
+        }
+
+        @Override
+        public void setKeepAlive(boolean on) {}
+
+        @Override
+        public boolean getKeepAlive()
+        {
+            return false;
+        }
+
+        @Override
+        public void setSoLinger(boolean on, int linger) {}
+
+        @Override
+        public int getSoLinger()
+        {
+            return -1;
+        }
+
+        @Override
+        public void setReuseAddress(boolean on) {}
+
+        @Override
+        public void setTrafficClass(int trafficClass) {}
+
+        @Override
+        public synchronized void setSendBufferSize(int size) {}
+
+        @Override
+        public synchronized void setReceiveBufferSize(int size) {}
+
+        @Override
+        public String toString()
+        {
+            return "ChannelSocket[" + channel + "]";
+        }
+
+        private class ChannelInputStream
+                extends InputStream
+        {
+            @Override
+            public int read()
+                    throws IOException
+            {
+                byte[] value = new byte[1];
+                return (read(value, 0, 1) < 0) ? -1 : (value[0] & 0xFF);
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length)
+                    throws IOException
+            {
+                if (length == 0) {
+                    return 0;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                int timeoutMillis = timeout;
+                long start = System.nanoTime();
+                while (true) {
+                    int read = channel.read(buffer);
+                    if (read != 0) {
+                        return read;
+                    }
+                    select(readSelector, timeoutMillis, start, "Read timed out");
+                }
+            }
+
+            @Override
+            public void close()
+                    throws IOException
+            {
+                ChannelSocket.this.close();
+            }
+        }
+
+        private class ChannelOutputStream
+                extends OutputStream
+        {
+            @Override
+            public void write(int value)
+                    throws IOException
+            {
+                write(new byte[] {(byte) value}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length)
+                    throws IOException
+            {
+                // like a socket, writes are not bounded by the read timeout
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) {
+                    if (channel.write(buffer) == 0) {
+                        select(writeSelector, 0, 0, "Write timed out");
+                    }
+                }
+            }
+
+            @Override
+            public void close()
+                    throws IOException
+            {
+                ChannelSocket.this.close();
+            }
+        }
+    }
+}
@@ -13,24 +13,75 @@
  */
 package com.facebook.presto.testing.mysql;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
+import javax.sql.DataSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
+import static com.google.common.base.Strings.repeat;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isWritable;
+import static java.nio.file.Files.list;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.walk;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
 import static org.testng.Assert.assertTrue;
 
 public abstract class AbstractTestTestingMySqlServer
 {
     public abstract String getMySqlVersion();
 
-    public abstract AbstractTestingMySqlServer createMySqlServer(String user, String password, String... databases)
+    public abstract AbstractTestingMySqlServer createMySqlServer(MySqlOptions mySqlOptions, String user, String password, String... databases)
+            throws Exception;
+
+    public AbstractTestingMySqlServer createMySqlServer(String user, String password, String... databases)
+            throws Exception
+    {
+        return createMySqlServer(MySqlOptions.builder().build(), user, password, databases);
+    }
+
+    public abstract MySqlServerPool createMySqlServerPool(int maxServers);
+
+    public abstract CompletableFuture<? extends List<? extends AbstractTestingMySqlServer>> startMySqlServersAsync(int count, String user, String password);
+
+    public abstract TestingMySqlCluster createMySqlCluster(int replicas, String user, String password, String... databases)
             throws Exception;
 
     @Test
@@ -44,6 +95,7 @@ public abstract class AbstractTestTestingMySqlServer
             assertEquals(server.getPassword(), "testpass");
             assertEquals(server.getJdbcUrl().substring(0, 5), "jdbc:");
             assertEquals(server.getPort(), URI.create(server.getJdbcUrl().substring(5)).getPort());
+            assertTrue(server.getStartupStats().getTotal().toMillis() > 0);
 
             try (Connection connection = DriverManager.getConnection(server.getJdbcUrl())) {
                 assertEquals(connection.getMetaData().getDatabaseProductName(), "MySQL");
@@ -79,4 +131,737 @@ public abstract class AbstractTestTestingMySqlServer
             }
         }
     }
+
+    @Test
+    public void testServerPool()
+            throws Exception
+    {
+        try (MySqlServerPool pool = createMySqlServerPool(1)) {
+            try (MySqlDatabaseLease first = pool.lease();
+                    MySqlDatabaseLease second = pool.lease()) {
+                assertEquals(pool.getServerCount(), 1);
+                assertEquals(first.getPort(), second.getPort());
+                assertNotEquals(first.getDatabase(), second.getDatabase());
+
+                try (Connection connection = DriverManager.getConnection(first.getJdbcUrl());
+                        Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE test_table (c1 bigint PRIMARY KEY)");
+                }
+            }
+
+            // the lease user only sees its own database, so the dropped leases are counted as root
+            try (MySqlDatabaseLease lease = pool.lease();
+                    Connection connection = lease.getServer().getRootConnection();
+                    Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT schema_name FROM information_schema.schemata WHERE schema_name LIKE 'lease\\_%'")) {
+                assertTrue(resultSet.next());
+                assertEquals(resultSet.getString(1), lease.getDatabase());
+                assertFalse(resultSet.next());
+            }
+        }
+    }
+
+    @Test
+    public void testProvisioning()
+            throws Exception
+    {
+        try (AbstractTestingMySqlServer server = createMySqlServer("testuser", "testpass")) {
+            MySqlProvisioning.Builder create = MySqlProvisioning.builder();
+            MySqlProvisioning.Builder drop = MySqlProvisioning.builder();
+            for (int i = 0; i < 100; i++) {
+                create.createDatabase("tenant" + i)
+                        .createUser("tenant" + i, "pass" + i)
+                        .grantAll("tenant" + i, "tenant" + i);
+                drop.dropDatabase("tenant" + i)
+                        .dropUser("tenant" + i);
+            }
+            server.provision(create.build());
+            // provisioning is idempotent
+            server.provision(create.build());
+
+            try (Connection connection = DriverManager.getConnection(server.getJdbcUrl("tenant42", "tenant42", "pass42"));
+                    Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE test_table (c1 bigint PRIMARY KEY)");
+            }
+
+            server.provision(drop.build());
+            try (Connection connection = DriverManager.getConnection(server.getJdbcUrl());
+                    Statement statement = connection.createStatement()) {
+                assertEquals(querySum(statement, "SELECT count(*) FROM information_schema.schemata WHERE schema_name LIKE 'tenant%'"), 0L);
+                assertEquals(querySum(statement, "SELECT count(*) FROM mysql.user WHERE user LIKE 'tenant%'"), 0L);
+            }
+        }
+    }
+
+    @Test
+    public void testServerPoolBatchLease()
+            throws Exception
+    {
+        try (MySqlServerPool pool = createMySqlServerPool(1)) {
+            List<MySqlDatabaseLease> leases = pool.lease(10);
+            assertEquals(leases.stream().map(MySqlDatabaseLease::getDatabase).distinct().count(), 10L);
+            for (MySqlDatabaseLease lease : leases) {
+                try (Connection connection = DriverManager.getConnection(lease.getJdbcUrl());
+                        Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE test_table (c1 bigint PRIMARY KEY)");
+                }
+                lease.close();
+            }
+        }
+    }
+
+    @Test
+    public void testDataDirectoryRoot()
+            throws Exception
+    {
+        // put the root on tmpfs where available, which is what the option is meant for
+        Path sharedMemory = Paths.get("/dev/shm");
+        Path root = isDirectory(sharedMemory) && isWritable(sharedMemory) ?
+                createTempDirectory(sharedMemory, "testing-mysql-server-root") :
+                createTempDirectory("testing-mysql-server-root");
+        try {
+            MySqlOptions mySqlOptions = MySqlOptions.builder()
+                    .setDataDirectoryRoot(root)
+                    .build();
+            try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+                List<Path> serverDirectories = listDirectory(root);
+                assertEquals(serverDirectories.size(), 1);
+                assertTrue(isDirectory(serverDirectories.get(0).resolve("data").resolve("db1")));
+            }
+
+            // the server directory is deleted on close, but the root is left alone
+            assertTrue(isDirectory(root));
+            assertEquals(listDirectory(root), ImmutableList.of());
+        }
+        finally {
+            deleteRecursively(root, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testRetainedDataDirectoryReuse()
+            throws Exception
+    {
+        Path directory = createTempDirectory("testing-mysql-server-retain");
+        Path serverDirectory = directory.resolve("server");
+        try {
+            MySqlOptions mySqlOptions = MySqlOptions.builder()
+                    .setServerDirectory(serverDirectory)
+                    .setDirectoryCleanup(DirectoryCleanup.RETAIN)
+                    .build();
+            try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1");
+                    Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                    Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE test_table (c1 bigint PRIMARY KEY)");
+                statement.execute("INSERT INTO test_table VALUES (1), (2)");
+            }
+            assertTrue(isDirectory(serverDirectory.resolve("data")));
+
+            // the existing user and database are reused, and a new database is added
+            try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1", "db2");
+                    Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                    Statement statement = connection.createStatement()) {
+                assertEquals(querySum(statement, "SELECT sum(c1) FROM test_table"), 3L);
+                statement.execute("CREATE TABLE db2.test_table (c1 bigint PRIMARY KEY)");
+            }
+            assertTrue(isDirectory(serverDirectory.resolve("data")));
+        }
+        finally {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testGracefulShutdown()
+            throws Exception
+    {
+        Path directory = createTempDirectory("testing-mysql-server-graceful");
+        Path serverDirectory = directory.resolve("server");
+        try {
+            MySqlOptions mySqlOptions = MySqlOptions.builder()
+                    .setServerDirectory(serverDirectory)
+                    .setShutdownMode(ShutdownMode.GRACEFUL)
+                    .setDirectoryCleanup(DirectoryCleanup.RETAIN)
+                    .build();
+            int port;
+            try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+                port = server.getPort();
+                assertTrue(exists(serverDirectory.resolve("mysqld.pid")) || exists(serverDirectory.resolve("data").resolve("mariadb.pid")));
+            }
+
+            // mysqld only removes its pid file when it shuts down cleanly, which a kill does not allow
+            assertFalse(exists(serverDirectory.resolve("mysqld.pid")));
+            assertFalse(exists(serverDirectory.resolve("data").resolve("mariadb.pid")));
+            assertFalse(isAcceptingConnections(port));
+        }
+        finally {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testDeleteAsync()
+            throws Exception
+    {
+        Path root = createTempDirectory("testing-mysql-server-root");
+        try {
+            MySqlOptions mySqlOptions = MySqlOptions.builder()
+                    .setDataDirectoryRoot(root)
+                    .setDirectoryCleanup(DirectoryCleanup.DELETE_ASYNC)
+                    .build();
+            Path serverDirectory;
+            try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+                serverDirectory = getOnlyElement(listDirectory(root));
+            }
+
+            // the directory is renamed before close returns, and deleted in the background
+            assertFalse(exists(serverDirectory));
+            long start = System.nanoTime();
+            while (!listDirectory(root).isEmpty()) {
+                assertTrue(Duration.nanosSince(start).compareTo(new Duration(1, MINUTES)) < 0, "server directory was not deleted");
+                MILLISECONDS.sleep(100);
+            }
+        }
+        finally {
+            deleteRecursively(root, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testSnapshotRestore()
+            throws Exception
+    {
+        try (AbstractTestingMySqlServer server = createMySqlServer("testuser", "testpass", "db1");
+                Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE changed (c1 bigint PRIMARY KEY)");
+            statement.execute("CREATE TABLE dropped (c1 bigint PRIMARY KEY)");
+            statement.execute("INSERT INTO changed VALUES (1), (2)");
+            statement.execute("INSERT INTO dropped VALUES (3)");
+
+            server.snapshot("db1");
+
+            statement.execute("DELETE FROM changed WHERE c1 = 1");
+            statement.execute("INSERT INTO changed VALUES (4)");
+            statement.execute("DROP TABLE dropped");
+            statement.execute("CREATE TABLE created (c1 bigint)");
+
+            server.restore("db1");
+
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM changed"), 3L);
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM dropped"), 3L);
+            assertEquals(querySum(statement, "SELECT count(*) FROM information_schema.tables WHERE table_schema = 'db1' AND table_name = 'created'"), 0L);
+
+            // a snapshot can be restored repeatedly
+            statement.execute("UPDATE changed SET c1 = c1 + 10");
+            server.restore("db1");
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM changed"), 3L);
+
+            server.dropSnapshot("db1");
+        }
+    }
+
+    @Test
+    public void testSnapshotRestoreUntriggeredChanges()
+            throws Exception
+    {
+        try (AbstractTestingMySqlServer server = createMySqlServer("testuser", "testpass", "db1");
+                Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE truncated (c1 bigint PRIMARY KEY)");
+            statement.execute("CREATE TABLE recreated (c1 bigint PRIMARY KEY)");
+            statement.execute("CREATE TABLE altered (c1 bigint PRIMARY KEY)");
+            statement.execute("INSERT INTO truncated VALUES (1), (2)");
+            statement.execute("INSERT INTO recreated VALUES (3)");
+            statement.execute("INSERT INTO altered VALUES (4)");
+
+            server.snapshot("db1");
+
+            // none of these fire the row triggers
+            statement.execute("TRUNCATE TABLE truncated");
+            statement.execute("DROP TABLE recreated");
+            statement.execute("CREATE TABLE recreated (c1 bigint PRIMARY KEY)");
+            statement.execute("INSERT INTO recreated VALUES (30)");
+            statement.execute("ALTER TABLE altered ADD COLUMN c2 bigint");
+
+            server.restore("db1");
+
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM truncated"), 3L);
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM recreated"), 3L);
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM altered"), 4L);
+            assertEquals(querySum(statement, "SELECT count(*) FROM information_schema.columns WHERE table_schema = 'db1' AND table_name = 'altered'"), 1L);
+
+            // the recreated tables are tracked again, and the restore itself is not mistaken for a change
+            statement.execute("INSERT INTO recreated VALUES (5)");
+            statement.execute("TRUNCATE TABLE altered");
+            server.restore("db1");
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM truncated"), 3L);
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM recreated"), 3L);
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM altered"), 4L);
+
+            server.dropSnapshot("db1");
+        }
+    }
+
+    @Test
+    public void testLoadTable()
+            throws Exception
+    {
+        try (AbstractTestingMySqlServer server = createMySqlServer("testuser", "testpass", "db1");
+                Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE test_table (id bigint PRIMARY KEY, name varchar(50) CHARACTER SET utf8mb4, data varbinary(10), flag boolean)");
+
+            long loaded = server.loadTable("db1", "test_table", IntStream.range(0, 10_000)
+                    .mapToObj(i -> new Object[] {i, "row\t\n\\ " + i + " \u00e9", new byte[] {0, 9, (byte) i}, i % 2 == 0}));
+            assertEquals(loaded, 10_000L);
+
+            server.loadTable("db1", "test_table", ImmutableList.<Object[]>of(new Object[] {-1, null, null, null}).iterator());
+
+            assertEquals(querySum(statement, "SELECT count(*) FROM test_table"), 10_001L);
+            assertEquals(querySum(statement, "SELECT sum(flag) FROM test_table"), 5_000L);
+            assertEquals(querySum(statement, "SELECT count(*) FROM test_table WHERE name IS NULL AND data IS NULL"), 1L);
+            try (ResultSet resultSet = statement.executeQuery("SELECT name, data FROM test_table WHERE id = 42")) {
+                assertTrue(resultSet.next());
+                assertEquals(resultSet.getString(1), "row\t\n\\ 42 \u00e9");
+                assertEquals(resultSet.getBytes(2), new byte[] {0, 9, 42});
+            }
+
+            // invalid values and duplicate keys fail like they do with INSERT in strict mode, and load nothing
+            assertThrows(SQLException.class, () -> server.loadTable("db1", "test_table", ImmutableList.<Object[]>of(new Object[] {-2, null, null, null}, new Object[] {"not a number", null, null, null}).iterator()));
+            assertThrows(SQLException.class, () -> server.loadTable("db1", "test_table", ImmutableList.<Object[]>of(new Object[] {-2, null, null, null}, new Object[] {-3, repeat("x", 51), null, null}).iterator()));
+            assertThrows(SQLException.class, () -> server.loadTable("db1", "test_table", ImmutableList.<Object[]>of(new Object[] {-2, null, null, null}, new Object[] {42, null, null, null}).iterator()));
+            assertEquals(querySum(statement, "SELECT count(*) FROM test_table"), 10_001L);
+        }
+    }
+
+    @Test
+    public void testDataset()
+            throws Exception
+    {
+        Path cacheDirectory = createTempDirectory("testing-mysql-server-cache");
+        AtomicInteger loads = new AtomicInteger();
+        MySqlDataset dataset = new MySqlDataset()
+        {
+            @Override
+            public String getName()
+            {
+                return "test-v1";
+            }
+
+            @Override
+            public void load(Connection connection)
+                    throws SQLException
+            {
+                loads.incrementAndGet();
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE DATABASE dataset");
+                    statement.execute("CREATE TABLE dataset.numbers (n bigint PRIMARY KEY)");
+                }
+                TableLoader.loadTable(connection, "dataset", "numbers", LongStream.range(0, 1000)
+                        .mapToObj(n -> new Object[] {n})
+                        .iterator());
+            }
+        };
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setCacheDirectory(cacheDirectory)
+                .setDataset(dataset)
+                .build();
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "dataset");
+                        Connection connection = DriverManager.getConnection(server.getJdbcUrl("dataset"));
+                        Statement statement = connection.createStatement()) {
+                    assertEquals(querySum(statement, "SELECT count(*) FROM numbers"), 1000L);
+                }
+            }
+            // the second server started from the cached image
+            assertEquals(loads.get(), 1);
+        }
+        finally {
+            deleteRecursively(cacheDirectory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testDataSource()
+            throws Exception
+    {
+        try (AbstractTestingMySqlServer server = createMySqlServer("testuser", "testpass", "db1")) {
+            DataSource dataSource = server.getDataSource("db1");
+            assertSame(server.getDataSource("db1"), dataSource);
+
+            Connection physical;
+            try (Connection connection = dataSource.getConnection()) {
+                physical = connection.unwrap(Connection.class);
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE test_table (c1 bigint PRIMARY KEY)");
+                    statement.execute("INSERT INTO test_table VALUES (1)");
+                }
+            }
+
+            // the connection is reused, and the uncommitted insert was rolled back when it was returned
+            try (Connection connection = dataSource.getConnection();
+                    Statement statement = connection.createStatement()) {
+                assertSame(connection.unwrap(Connection.class), physical);
+                assertTrue(connection.getAutoCommit());
+                assertEquals(querySum(statement, "SELECT count(*) FROM test_table"), 0L);
+
+                statement.execute("SET @user_variable = 42");
+                statement.execute("SET SESSION sql_mode = 'NO_BACKSLASH_ESCAPES'");
+                statement.execute("CREATE TEMPORARY TABLE temporary_table (c1 bigint)");
+            }
+
+            // session state does not leak into the next borrower
+            try (Connection connection = dataSource.getConnection();
+                    Statement statement = connection.createStatement()) {
+                assertSame(connection.unwrap(Connection.class), physical);
+                try (ResultSet resultSet = statement.executeQuery("SELECT @user_variable, @@session.sql_mode LIKE '%NO_BACKSLASH_ESCAPES%'")) {
+                    assertTrue(resultSet.next());
+                    assertNull(resultSet.getObject(1));
+                    assertFalse(resultSet.getBoolean(2));
+                }
+                // fails if the temporary table still exists
+                statement.execute("CREATE TEMPORARY TABLE temporary_table (c1 bigint)");
+            }
+        }
+    }
+
+    @Test
+    public void testProfile()
+            throws Exception
+    {
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setProfile(MySqlProfile.MINIMAL_MEMORY)
+                .setServerArguments(ImmutableList.of("--max_connections=17"))
+                .build();
+        try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass");
+                Connection connection = DriverManager.getConnection(server.getJdbcUrl());
+                Statement statement = connection.createStatement()) {
+            assertEquals(querySum(statement, "SELECT @@max_connections"), 17L);
+            assertEquals(querySum(statement, "SELECT @@performance_schema"), 0L);
+            assertEquals(querySum(statement, "SELECT @@log_bin"), 0L);
+            if (isDirectory(Paths.get("/proc"))) {
+                assertTrue(server.getResidentMemory().get().toBytes() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testRuntimeStats()
+            throws Exception
+    {
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setRuntimeStatsInterval(new Duration(10, MILLISECONDS))
+                .build();
+        try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1");
+                Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE test_table (c1 bigint PRIMARY KEY)");
+            statement.execute("INSERT INTO test_table VALUES (1), (2), (3)");
+            assertEquals(querySum(statement, "SELECT sum(c1) FROM test_table"), 6L);
+
+            RuntimeStats stats = server.getRuntimeStats();
+            assertTrue(stats.getQueries() >= 3);
+            assertTrue(stats.getInnodbRowsInserted() >= 3);
+            assertTrue(stats.getInnodbRowsRead() >= 3);
+            assertTrue(stats.getDataDirectorySize().toBytes() > 0);
+            if (isDirectory(Paths.get("/proc"))) {
+                assertTrue(stats.getCpuTime().isPresent());
+                assertTrue(stats.getOpenFiles().getAsInt() > 0);
+            }
+
+            // the first sample is due one interval after startup, a sample also walks the data directory
+            long start = System.nanoTime();
+            while (server.getRuntimeStatsHistory().isEmpty()) {
+                assertTrue(Duration.nanosSince(start).compareTo(new Duration(1000, MILLISECONDS)) < 0, "no runtime stats were sampled within 1s");
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void testSharedServer()
+            throws Exception
+    {
+        Path cacheDirectory = createTempDirectory("testing-mysql-server-cache");
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setShared(true)
+                .setCacheDirectory(cacheDirectory)
+                .build();
+        try {
+            try (AbstractTestingMySqlServer first = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+                try (AbstractTestingMySqlServer second = createMySqlServer(mySqlOptions, "otheruser", "otherpass", "db2")) {
+                    assertEquals(second.getPort(), first.getPort());
+                    first.close();
+
+                    // the server keeps running until the last attachment is closed
+                    try (Connection connection = DriverManager.getConnection(second.getJdbcUrl("db2"));
+                            Statement statement = connection.createStatement()) {
+                        assertEquals(querySum(statement, "SELECT 42"), 42L);
+                    }
+                }
+                assertFalse(isAcceptingConnections(first.getPort()));
+            }
+        }
+        finally {
+            deleteRecursively(cacheDirectory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testSharedServerWithExpiredLeases()
+            throws Exception
+    {
+        Path cacheDirectory = createTempDirectory("testing-mysql-server-cache");
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setShared(true)
+                .setCacheDirectory(cacheDirectory)
+                .setSharedLeaseTimeout(new Duration(1, HOURS))
+                .build();
+        try {
+            try (AbstractTestingMySqlServer orphaned = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+                // the lease of a JVM that was killed is no longer renewed
+                try (Stream<Path> files = walk(cacheDirectory.resolve("shared"))) {
+                    for (Path lease : files.filter(path -> path.getParent().getFileName().toString().equals("leases")).collect(toImmutableList())) {
+                        setLastModifiedTime(lease, FileTime.fromMillis(0));
+                    }
+                }
+
+                // the next attachment stops the orphaned server instead of attaching to it
+                try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "otherpass", "db1")) {
+                    assertNotEquals(server.getPort(), orphaned.getPort());
+                    assertFalse(isAcceptingConnections(orphaned.getPort()));
+                    try (Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                            Statement statement = connection.createStatement()) {
+                        assertEquals(querySum(statement, "SELECT 42"), 42L);
+                    }
+                }
+            }
+        }
+        finally {
+            deleteRecursively(cacheDirectory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testSharedServerNamesInUse()
+            throws Exception
+    {
+        Path cacheDirectory = createTempDirectory("testing-mysql-server-cache");
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setShared(true)
+                .setCacheDirectory(cacheDirectory)
+                .build();
+        try {
+            try (AbstractTestingMySqlServer first = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+                // another attachment must not change the password or the tables of the first one
+                assertThrows(IllegalStateException.class, () -> createMySqlServer(mySqlOptions, "testuser", "otherpass", "db2"));
+                assertThrows(IllegalStateException.class, () -> createMySqlServer(mySqlOptions, "otheruser", "otherpass", "db1"));
+                try (Connection connection = DriverManager.getConnection(first.getJdbcUrl("db1"));
+                        Statement statement = connection.createStatement()) {
+                    assertEquals(querySum(statement, "SELECT 42"), 42L);
+                }
+
+                // the names are released with the attachment, and the user gets the new password
+                try (AbstractTestingMySqlServer second = createMySqlServer(mySqlOptions, "otheruser", "testpass", "db2")) {
+                    second.close();
+                    try (AbstractTestingMySqlServer third = createMySqlServer(mySqlOptions, "otheruser", "otherpass", "db2");
+                            Connection connection = DriverManager.getConnection(third.getJdbcUrl("db2"));
+                            Statement statement = connection.createStatement()) {
+                        assertEquals(third.getPort(), first.getPort());
+                        assertEquals(querySum(statement, "SELECT 42"), 42L);
+                    }
+                }
+            }
+        }
+        finally {
+            deleteRecursively(cacheDirectory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testUnixSocket()
+            throws Exception
+    {
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setUseUnixSocket(true)
+                .build();
+        try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+            assertEquals(server.getJdbcUrl("db1").contains("socketFactory="), UnixDomainSockets.isSupported());
+            try (Connection connection = server.getDataSource("db1").getConnection();
+                    Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT host FROM information_schema.processlist WHERE id = CONNECTION_ID()")) {
+                assertTrue(resultSet.next());
+                // TCP connections include the client port
+                assertEquals(resultSet.getString(1).equals("localhost"), UnixDomainSockets.isSupported());
+            }
+        }
+    }
+
+    @Test
+    public void testStartAsync()
+            throws Exception
+    {
+        List<? extends AbstractTestingMySqlServer> servers = startMySqlServersAsync(3, "testuser", "testpass").get();
+        try {
+            assertEquals(servers.size(), 3);
+            assertEquals(servers.stream().map(AbstractTestingMySqlServer::getPort).distinct().count(), 3L);
+            for (AbstractTestingMySqlServer server : servers) {
+                try (Connection connection = DriverManager.getConnection(server.getJdbcUrl())) {
+                    assertEquals(connection.getMetaData().getDatabaseProductName(), "MySQL");
+                }
+            }
+        }
+        finally {
+            for (AbstractTestingMySqlServer server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCluster()
+            throws Exception
+    {
+        try (TestingMySqlCluster cluster = createMySqlCluster(2, "testuser", "testpass", "db1")) {
+            assertEquals(cluster.getReplicas().size(), 2);
+            try (Connection connection = DriverManager.getConnection(cluster.getSource().getJdbcUrl("db1"));
+                    Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE t (id bigint PRIMARY KEY)");
+                statement.execute("INSERT INTO t VALUES (1), (2), (3)");
+            }
+
+            cluster.waitForReplicaCatchUp();
+            for (int i = 0; i < cluster.getReplicas().size(); i++) {
+                assertTrue(cluster.getReplicaLag(i).isPresent());
+                try (Connection connection = DriverManager.getConnection(cluster.getReplica(i).getJdbcUrl("db1"));
+                        Statement statement = connection.createStatement()) {
+                    assertEquals(querySum(statement, "SELECT sum(id) FROM t"), 6L);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBinlogStream()
+            throws Exception
+    {
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setRowBinaryLog(true)
+                .build();
+        try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1");
+                Connection connection = DriverManager.getConnection(server.getJdbcUrl("db1"));
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE t (id bigint PRIMARY KEY, name varchar(20), price decimal(10, 2), created date)");
+            try (BinlogStream stream = server.openBinlogStream()) {
+                server.loadTable("db1", "t", IntStream.range(0, 1000)
+                        .mapToObj(i -> new Object[] {i, "row " + i, new BigDecimal(i).movePointLeft(2), LocalDate.of(2020, 1, 1)}));
+                statement.execute("UPDATE t SET name = NULL WHERE id = 1");
+                statement.execute("DELETE FROM t WHERE id = 2");
+
+                List<RowChange> changes = stream.stream()
+                        .limit(1002)
+                        .collect(toImmutableList());
+                assertEquals(changes.stream().filter(change -> change.getType() == RowChange.Type.INSERT).count(), 1000L);
+
+                RowChange insert = changes.get(3);
+                assertEquals(insert.getDatabase(), "db1");
+                assertEquals(insert.getTable(), "t");
+                assertEquals(insert.getAfter().get(), new Object[] {3L, "row 3", new BigDecimal("0.03"), LocalDate.of(2020, 1, 1)});
+
+                RowChange update = changes.get(1000);
+                assertEquals(update.getType(), RowChange.Type.UPDATE);
+                assertEquals(update.getBefore().get()[1], "row 1");
+                assertNull(update.getAfter().get()[1]);
+
+                RowChange delete = changes.get(1001);
+                assertEquals(delete.getType(), RowChange.Type.DELETE);
+                assertEquals(delete.getBefore().get()[0], 2L);
+                assertFalse(stream.poll(new Duration(10, MILLISECONDS)).isPresent());
+            }
+        }
+    }
+
+    @Test
+    public void testStatementDigests()
+            throws Exception
+    {
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setStatementDigests(true)
+                .build();
+        try (AbstractTestingMySqlServer server = createMySqlServer(mySqlOptions, "testuser", "testpass", "db1")) {
+            try (Connection connection = server.getDataSource("db1").getConnection();
+                    Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE t (id bigint PRIMARY KEY, value bigint)");
+                statement.execute("INSERT INTO t VALUES (1, 1), (2, 2), (3, 3)");
+            }
+            server.snapshot("db1");
+            server.resetStatementDigests();
+
+            // each statement uses a pooled connection, whose session is reset when it is returned
+            for (int i = 0; i < 5; i++) {
+                try (Connection connection = server.getDataSource("db1").getConnection();
+                        Statement statement = connection.createStatement()) {
+                    assertEquals(querySum(statement, "SELECT count(*) FROM t WHERE value > " + i), Math.max(3L - i, 0));
+                }
+            }
+            server.restore("db1");
+
+            // neither the driver nor the root connections of the server, such as the snapshot, are included
+            List<StatementDigest> digests = getStatementDigests(server);
+            assertEquals(digests.size(), 1, digests.toString());
+            StatementDigest digest = digests.get(0);
+            assertEquals(digest.getSchema(), Optional.of("db1"));
+            assertTrue(digest.getDigestText().contains("?"));
+            assertEquals(digest.getCount(), 5);
+            assertEquals(digest.getRowsExamined(), 15);
+            assertEquals(digest.getNoIndexUsed(), 5);
+            assertEquals(digest.getP95Latency().isPresent(), getMySqlVersion().startsWith("8."));
+
+            server.resetStatementDigests();
+            assertTrue(getStatementDigests(server).isEmpty());
+        }
+    }
+
+    private static List<StatementDigest> getStatementDigests(AbstractTestingMySqlServer server)
+            throws SQLException
+    {
+        if (!AbstractTestingMySqlServer.isMariadb) {
+            return server.getStatementDigests();
+        }
+        // MariaDB only excludes the root connections that were open when the server started
+        return server.getStatementDigests().stream()
+                .filter(digest -> digest.getSchema().isPresent())
+                .collect(toImmutableList());
+    }
+
+    private static List<Path> listDirectory(Path directory)
+            throws IOException
+    {
+        try (Stream<Path> files = list(directory)) {
+            return files.collect(toImmutableList());
+        }
+    }
+
+    private static boolean isAcceptingConnections(int port)
+    {
+        try (Socket ignored = new Socket("localhost", port)) {
+            return true;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long querySum(Statement statement, String sql)
+            throws Exception
+    {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getLong(1);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_DATE;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_DATETIME2;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_INT24;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_LONGLONG;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_NEWDECIMAL;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_STRING;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_TIME2;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_TIMESTAMP2;
+import static com.facebook.presto.testing.mysql.BinlogReader.TYPE_VARCHAR;
+import static com.facebook.presto.testing.mysql.BinlogReader.decodeValue;
+import static com.google.common.io.BaseEncoding.base16;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class TestBinlogReader
+{
+    @Test
+    public void testIntegers()
+            throws Exception
+    {
+        assertEquals(decodeValue(bytes("ffffff"), TYPE_INT24, 0), -1);
+        assertEquals(decodeValue(bytes("2a00000000000000"), TYPE_LONGLONG, 0), 42L);
+    }
+
+    @Test
+    public void testDecimal()
+            throws Exception
+    {
+        // DECIMAL(14, 4)
+        int metadata = (14 << 8) | 4;
+        assertEquals(decodeValue(bytes("810dfb38d204d2"), TYPE_NEWDECIMAL, metadata), new BigDecimal("1234567890.1234"));
+        assertEquals(decodeValue(bytes("7ef204c72dfb2d"), TYPE_NEWDECIMAL, metadata), new BigDecimal("-1234567890.1234"));
+    }
+
+    @Test
+    public void testTemporal()
+            throws Exception
+    {
+        assertEquals(decodeValue(bytes("22c80f"), TYPE_DATE, 0), LocalDate.of(2020, 1, 2));
+        assertNull(decodeValue(bytes("000000"), TYPE_DATE, 0));
+        assertEquals(decodeValue(bytes("99a5443105"), TYPE_DATETIME2, 0), LocalDateTime.of(2020, 1, 2, 3, 4, 5));
+        assertEquals(decodeValue(bytes("99a544310501e240"), TYPE_DATETIME2, 6), LocalDateTime.of(2020, 1, 2, 3, 4, 5, 123_456_000));
+        assertEquals(decodeValue(bytes("5e0d3ca004d2"), TYPE_TIMESTAMP2, 4), Instant.ofEpochSecond(1577925792, 123_400_000));
+        assertEquals(decodeValue(bytes("80c8b8"), TYPE_TIME2, 0), Duration.ofSeconds(12 * 3600 + 34 * 60 + 56));
+        assertEquals(decodeValue(bytes("7f3748"), TYPE_TIME2, 0), Duration.ofSeconds(12 * 3600 + 34 * 60 + 56).negated());
+    }
+
+    @Test
+    public void testStrings()
+            throws Exception
+    {
+        assertEquals(decodeValue(bytes("026162"), TYPE_VARCHAR, 40), "ab");
+        assertEquals(decodeValue(bytes("02006162"), TYPE_VARCHAR, 400), "ab");
+        // CHAR(10) and CHAR(100) in utf8mb4, with the upper bits of the length of the latter stored in the type
+        assertEquals(decodeValue(bytes("026162"), TYPE_STRING, (0xFE << 8) | 40), "ab");
+        assertEquals(decodeValue(bytes("02006162"), TYPE_STRING, (0xEE << 8) | 0x90), "ab");
+    }
+
+    private static byte[] bytes(String hex)
+    {
+        return base16().lowerCase().decode(hex);
+    }
+}
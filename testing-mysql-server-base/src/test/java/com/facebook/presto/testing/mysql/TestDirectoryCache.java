@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestDirectoryCache
+{
+    @Test
+    public void testConcurrentSameKey()
+            throws Exception
+    {
+        Path directory = createTempDirectory("cache");
+        ExecutorService executor = newCachedThreadPool();
+        try {
+            DirectoryCache cache = new DirectoryCache(directory);
+            AtomicInteger loads = new AtomicInteger();
+            List<Future<Path>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> cache.getDirectory("same", target -> {
+                    loads.incrementAndGet();
+                    write(target.resolve("data"), "data".getBytes(UTF_8));
+                })));
+            }
+            for (Future<Path> future : futures) {
+                Path entry = future.get(10, SECONDS);
+                assertEquals(entry, directory.resolve("same"));
+                assertEquals(readAllBytes(entry.resolve("data")), "data".getBytes(UTF_8));
+            }
+            assertEquals(loads.get(), 1);
+        }
+        finally {
+            executor.shutdownNow();
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testConcurrentDifferentKeys()
+            throws Exception
+    {
+        Path directory = createTempDirectory("cache");
+        ExecutorService executor = newCachedThreadPool();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            DirectoryCache cache = new DirectoryCache(directory);
+            CountDownLatch loading = new CountDownLatch(1);
+            Future<Path> slow = executor.submit(() -> cache.getDirectory("slow", target -> {
+                loading.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }));
+            assertTrue(loading.await(10, SECONDS));
+
+            // another key is populated while the first one is still loading
+            Future<Path> fast = executor.submit(() -> cache.getDirectory("fast", target -> {}));
+            assertEquals(fast.get(10, SECONDS), directory.resolve("fast"));
+            release.countDown();
+            assertEquals(slow.get(10, SECONDS), directory.resolve("slow"));
+        }
+        finally {
+            release.countDown();
+            executor.shutdownNow();
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+}
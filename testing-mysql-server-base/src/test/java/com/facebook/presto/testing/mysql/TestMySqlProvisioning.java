@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestMySqlProvisioning
+{
+    @Test
+    public void testStatements()
+    {
+        MySqlProvisioning provisioning = MySqlProvisioning.builder()
+                .createUser("it's", "p\\a'ss")
+                .createDatabase("my`db")
+                .grantAll("it's", "my`db")
+                .grantAll("admin")
+                .dropDatabase("old")
+                .dropUser("old")
+                .build();
+
+        assertEquals(provisioning.getStatements(), ImmutableList.of(
+                "CREATE USER IF NOT EXISTS 'it''s'@'localhost' IDENTIFIED BY 'p\\\\a''ss'",
+                "CREATE DATABASE IF NOT EXISTS `my``db`",
+                "GRANT ALL ON `my``db`.* TO 'it''s'@'localhost'",
+                "GRANT ALL ON *.* TO 'admin'@'localhost' WITH GRANT OPTION",
+                "DROP DATABASE IF EXISTS `old`",
+                "DROP USER IF EXISTS 'old'@'localhost'"));
+    }
+}
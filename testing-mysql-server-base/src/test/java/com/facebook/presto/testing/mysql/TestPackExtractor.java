@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static com.facebook.presto.testing.mysql.PackExtractor.extractPack;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isExecutable;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestPackExtractor
+{
+    @Test
+    public void testExtract()
+            throws Exception
+    {
+        Path script = Paths.get("../pack-mysql.sh").toAbsolutePath();
+        Path directory = createTempDirectory("pack");
+        try {
+            Path source = createDirectories(directory.resolve("source"));
+            byte[] large = new byte[1_000_003];
+            for (int i = 0; i < large.length; i++) {
+                large[i] = (byte) (i % 7);
+            }
+
+            createDirectories(source.resolve("bin"));
+            createDirectories(source.resolve("docs"));
+            createDirectories(source.resolve("data"));
+            createDirectories(source.resolve("share/charsets"));
+            write(source.resolve("share/charsets/Index.xml"), "charsets".getBytes(UTF_8));
+            write(source.resolve("share/large.bin"), large);
+            write(source.resolve("share/empty"), new byte[0]);
+            write(source.resolve("docs/INFO_SRC"), "info".getBytes(UTF_8));
+            // more files than frames in flight
+            createDirectories(source.resolve("share/many"));
+            for (int i = 0; i < 200; i++) {
+                write(source.resolve("share/many/file" + i), ("file " + i).getBytes(UTF_8));
+            }
+            Path executable = write(source.resolve("bin/mysqld"), "#!/bin/sh\n".getBytes(UTF_8));
+            assertTrue(executable.toFile().setExecutable(true));
+
+            Path archive = directory.resolve("archive.pack");
+            Process pack = new ProcessBuilder("bash", "-c", "source \"$0\" && write_pack \"$1\" bin data docs share", script.toString(), archive.toString())
+                    .directory(source.toFile())
+                    .inheritIO()
+                    .start();
+            assertEquals(pack.waitFor(), 0);
+
+            Path target = directory.resolve("target");
+            try (InputStream in = newInputStream(archive)) {
+                extractPack(in, target, path -> !path.startsWith("docs"));
+            }
+
+            assertEquals(readAllBytes(target.resolve("share/charsets/Index.xml")), "charsets".getBytes(UTF_8));
+            assertEquals(readAllBytes(target.resolve("share/large.bin")), large);
+            assertEquals(readAllBytes(target.resolve("share/empty")).length, 0);
+            for (int i = 0; i < 200; i++) {
+                assertEquals(readAllBytes(target.resolve("share/many/file" + i)), ("file " + i).getBytes(UTF_8));
+            }
+            assertTrue(isExecutable(target.resolve("bin/mysqld")));
+            assertFalse(isExecutable(target.resolve("share/large.bin")));
+            assertTrue(isDirectory(target.resolve("data")));
+            assertFalse(exists(target.resolve("docs")));
+        }
+        finally {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.OptionalLong;
+
+import static com.facebook.presto.testing.mysql.ProcFileSystem.getCpuTime;
+import static com.facebook.presto.testing.mysql.ProcFileSystem.getOpenFiles;
+import static com.facebook.presto.testing.mysql.ProcFileSystem.getResidentMemory;
+import static com.facebook.presto.testing.mysql.ProcFileSystem.readPid;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.write;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestProcFileSystem
+{
+    @Test
+    public void testReadPid()
+            throws Exception
+    {
+        Path pidFile = createTempFile("mysqld", ".pid");
+        try {
+            assertEquals(readPid(pidFile), OptionalLong.empty());
+            write(pidFile, "1234\n".getBytes(US_ASCII));
+            assertEquals(readPid(pidFile), OptionalLong.of(1234));
+        }
+        finally {
+            delete(pidFile);
+        }
+        assertEquals(readPid(pidFile), OptionalLong.empty());
+    }
+
+    @Test
+    public void testResidentMemory()
+    {
+        Path self = Paths.get("/proc/self");
+        if (!isDirectory(self)) {
+            throw new SkipException("/proc is not available");
+        }
+        assertTrue(getResidentMemory(self).get().toBytes() > 0);
+        assertFalse(getResidentMemory(Paths.get("/proc/not-a-process")).isPresent());
+    }
+
+    @Test
+    public void testCpuTimeAndOpenFiles()
+    {
+        Path self = Paths.get("/proc/self");
+        if (!isDirectory(self)) {
+            throw new SkipException("/proc is not available");
+        }
+        assertTrue(getCpuTime(self).get().toMillis() > 0);
+        assertTrue(getOpenFiles(self).getAsInt() > 0);
+        assertFalse(getCpuTime(Paths.get("/proc/not-a-process")).isPresent());
+        assertFalse(getOpenFiles(Paths.get("/proc/not-a-process")).isPresent());
+    }
+}
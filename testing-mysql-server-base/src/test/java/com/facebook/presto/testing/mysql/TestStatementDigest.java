@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.testing.mysql.StatementDigest.isDriverStatement;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestStatementDigest
+{
+    @Test
+    public void testDriverStatements()
+    {
+        // MySQL 5.7 and 8.0 digest texts
+        assertTrue(isDriverStatement("SELECT @@SESSION . `auto_increment_increment` AS `auto_increment_increment` , @@`character_set_client` AS `character_set_client`"));
+        assertTrue(isDriverStatement("SELECT @@session . auto_increment_increment AS auto_increment_increment , @@character_set_client AS character_set_client"));
+        assertTrue(isDriverStatement("SET NAMES `utf8mb4`"));
+        assertTrue(isDriverStatement("SET `character_set_results` = NULL"));
+        assertTrue(isDriverStatement("SET `autocommit` = ?"));
+        assertTrue(isDriverStatement("SELECT @@SESSION . `transaction_read_only`"));
+
+        assertFalse(isDriverStatement("SELECT COUNT ( * ) FROM `t` WHERE `value` > ?"));
+        assertFalse(isDriverStatement("SELECT * FROM `performance_schema` . `threads`"));
+        assertFalse(isDriverStatement("SELECT @@SESSION . `sql_mode`"));
+    }
+}
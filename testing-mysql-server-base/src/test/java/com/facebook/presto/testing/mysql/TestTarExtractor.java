@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static com.facebook.presto.testing.mysql.TarExtractor.extractTar;
+import static com.facebook.presto.testing.mysql.TarExtractor.extractTarGz;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createLink;
+import static java.nio.file.Files.createSymbolicLink;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.isExecutable;
+import static java.nio.file.Files.isSymbolicLink;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.readSymbolicLink;
+import static java.nio.file.Files.size;
+import static java.nio.file.Files.write;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestTarExtractor
+{
+    @Test
+    public void testExtract()
+            throws Exception
+    {
+        Path directory = createTempDirectory("tar");
+        try {
+            Path source = createDirectories(directory.resolve("source"));
+            String longName = Strings.repeat("directory/", 15) + "file.txt";
+            byte[] large = new byte[1_000_003];
+            for (int i = 0; i < large.length; i++) {
+                large[i] = (byte) i;
+            }
+
+            createDirectories(source.resolve(longName).getParent());
+            write(source.resolve(longName), "long".getBytes(UTF_8));
+            write(source.resolve("large.bin"), large);
+            write(source.resolve("empty"), new byte[0]);
+            Path executable = write(source.resolve("run.sh"), "#!/bin/sh\n".getBytes(UTF_8));
+            assertTrue(executable.toFile().setExecutable(true));
+            createSymbolicLink(source.resolve("link"), source.getFileSystem().getPath("large.bin"));
+            createLink(source.resolve("hardlink"), source.resolve("large.bin"));
+
+            Path archive = directory.resolve("archive.tar.gz");
+            Process tar = new ProcessBuilder("tar", "-czf", archive.toString(), "-C", source.toString(), ".")
+                    .inheritIO()
+                    .start();
+            assertEquals(tar.waitFor(), 0);
+
+            Path target = directory.resolve("target");
+            try (InputStream in = newInputStream(archive)) {
+                extractTarGz(in, target);
+            }
+
+            assertEquals(readAllBytes(target.resolve(longName)), "long".getBytes(UTF_8));
+            assertEquals(readAllBytes(target.resolve("large.bin")), large);
+            assertEquals(readAllBytes(target.resolve("hardlink")), large);
+            assertEquals(size(target.resolve("empty")), 0);
+            assertTrue(isExecutable(target.resolve("run.sh")));
+            assertFalse(isExecutable(target.resolve("large.bin")));
+            assertTrue(isSymbolicLink(target.resolve("link")));
+            assertEquals(readSymbolicLink(target.resolve("link")).toString(), "large.bin");
+        }
+        finally {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testRejectSymbolicLinkOutsideTarget()
+            throws Exception
+    {
+        Path directory = createTempDirectory("tar");
+        try {
+            Path outside = createDirectories(directory.resolve("outside"));
+            Path links = createDirectories(directory.resolve("links"));
+            Path files = createDirectories(directory.resolve("files"));
+            createSymbolicLink(links.resolve("lib"), outside);
+            write(createDirectories(files.resolve("lib")).resolve("x"), "x".getBytes(UTF_8));
+
+            assertRejected(directory, "-C", links.toString(), "lib", "-C", files.toString(), "lib/x");
+            assertFalse(exists(outside.resolve("x")));
+        }
+        finally {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testRejectWriteThroughSymbolicLinkChain()
+            throws Exception
+    {
+        Path directory = createTempDirectory("tar");
+        try {
+            Path links = createDirectories(directory.resolve("links"));
+            Path files = createDirectories(directory.resolve("files"));
+            // each link stays inside the target when checked on its own, but "sub/escape" resolves to the parent of the target
+            createDirectories(links.resolve("sub"));
+            createSymbolicLink(links.resolve("sub/up"), links.getFileSystem().getPath(".."));
+            createSymbolicLink(links.resolve("sub/escape"), links.getFileSystem().getPath("up/.."));
+            write(createDirectories(files.resolve("sub/escape")).resolve("x"), "x".getBytes(UTF_8));
+
+            assertRejected(directory, "-C", links.toString(), "sub/up", "sub/escape", "-C", files.toString(), "sub/escape/x");
+            assertFalse(exists(directory.resolve("x")));
+        }
+        finally {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    private static void assertRejected(Path directory, String... tarArguments)
+            throws Exception
+    {
+        Path archive = directory.resolve("archive.tar");
+        Process tar = new ProcessBuilder(ImmutableList.<String>builder()
+                .add("tar", "-cf", archive.toString())
+                .add(tarArguments)
+                .build())
+                .inheritIO()
+                .start();
+        assertEquals(tar.waitFor(), 0);
+
+        try (InputStream in = newInputStream(archive)) {
+            extractTar(in, directory.resolve("target"));
+            fail("expected extraction to fail");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage().contains("outside of the target directory"), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolFamily;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.createTempDirectory;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestUnixDomainSockets
+{
+    @Test
+    public void testConnect()
+            throws Exception
+    {
+        if (!UnixDomainSockets.isSupported()) {
+            throw new SkipException("Unix domain sockets require Java 16 or later");
+        }
+
+        Path directory = createTempDirectory("socket");
+        Path socketFile = directory.resolve("test.sock");
+        int port = 1;
+        try (ServerSocketChannel server = bind(socketFile)) {
+            // echo the bytes back, one at a time
+            CompletableFuture<Void> echo = CompletableFuture.runAsync(() -> {
+                try (SocketChannel channel = server.accept()) {
+                    ByteBuffer buffer = ByteBuffer.allocate(1);
+                    while (channel.read(buffer) > 0) {
+                        buffer.flip();
+                        channel.write(buffer);
+                        buffer.clear();
+                    }
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            UnixDomainSockets.register(port, socketFile);
+            try (Socket socket = UnixDomainSockets.connect("localhost", port, 0)) {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(1000);
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream();
+                out.write(new byte[] {1, 2, 3});
+                out.flush();
+                byte[] bytes = new byte[3];
+                int read = 0;
+                while (read < bytes.length) {
+                    read += in.read(bytes, read, bytes.length - read);
+                }
+                assertEquals(bytes, new byte[] {1, 2, 3});
+
+                socket.shutdownOutput();
+                assertEquals(in.read(), -1);
+                assertFalse(socket.isClosed());
+            }
+            echo.get();
+        }
+        finally {
+            UnixDomainSockets.unregister(port);
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testReadTimeout()
+            throws Exception
+    {
+        if (!UnixDomainSockets.isSupported()) {
+            throw new SkipException("Unix domain sockets require Java 16 or later");
+        }
+
+        Path directory = createTempDirectory("socket");
+        Path socketFile = directory.resolve("test.sock");
+        try (ServerSocketChannel server = bind(socketFile);
+                Socket socket = UnixDomainSockets.connect(socketFile, 1000);
+                SocketChannel accepted = server.accept()) {
+            socket.setSoTimeout(100);
+            InputStream in = socket.getInputStream();
+            long start = System.nanoTime();
+            try {
+                in.read();
+                fail("expected read to time out");
+            }
+            catch (SocketTimeoutException expected) {
+            }
+            assertTrue(NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+
+            // like a TCP socket, the connection is still usable after a timeout
+            accepted.write(ByteBuffer.wrap(new byte[] {42}));
+            assertEquals(in.read(), 42);
+        }
+        finally {
+            deleteRecursively(directory, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testTcpFallback()
+            throws Exception
+    {
+        try (ServerSocket server = new ServerSocket(0);
+                Socket socket = UnixDomainSockets.connect("localhost", server.getLocalPort(), 1000);
+                Socket accepted = server.accept()) {
+            assertTrue(socket.isConnected());
+            assertEquals(accepted.getPort(), socket.getLocalPort());
+        }
+    }
+
+    private static ServerSocketChannel bind(Path socketFile)
+            throws Exception
+    {
+        ServerSocketChannel server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        server.bind((SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class).invoke(null, socketFile));
+        return server;
+    }
+}
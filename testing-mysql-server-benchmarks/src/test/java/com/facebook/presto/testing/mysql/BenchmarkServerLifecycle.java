@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.createTempDirectory;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(MILLISECONDS)
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+public class BenchmarkServerLifecycle
+{
+    @Param({"cold", "warm"})
+    private String cache = "warm";
+
+    @Param({"true", "false"})
+    private boolean initializeFromTemplate = true;
+
+    private Path warmCacheDirectory;
+    private Path cacheDirectory;
+    private TestingMySqlServer server;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+            throws Exception
+    {
+        warmCacheDirectory = createTempDirectory("testing-mysql-server-benchmark");
+        // populate the cache with the distribution and the data directory template
+        new TestingMySqlServer("testuser", "testpass", ImmutableList.of(), options(warmCacheDirectory)).close();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation()
+            throws IOException
+    {
+        cacheDirectory = cache.equals("cold") ? createTempDirectory("testing-mysql-server-benchmark") : warmCacheDirectory;
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation()
+            throws IOException
+    {
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+        if (!cacheDirectory.equals(warmCacheDirectory)) {
+            deleteRecursively(cacheDirectory, ALLOW_INSECURE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+            throws IOException
+    {
+        deleteRecursively(warmCacheDirectory, ALLOW_INSECURE);
+    }
+
+    @Benchmark
+    public TestingMySqlServer startServer(StartupPhases phases)
+            throws Exception
+    {
+        server = new TestingMySqlServer("testuser", "testpass", ImmutableList.of("testdb"), options(cacheDirectory));
+        phases.record(server.getStartupStats());
+        return server;
+    }
+
+    @Benchmark
+    public void closeServer(RunningServer runningServer)
+            throws IOException
+    {
+        runningServer.getServer().close();
+    }
+
+    private MySqlOptions options(Path cacheDirectory)
+    {
+        return MySqlOptions.builder()
+                .setCacheDirectory(cacheDirectory)
+                .setInitializeFromTemplate(initializeFromTemplate)
+                .build();
+    }
+
+    @State(Scope.Thread)
+    public static class RunningServer
+    {
+        private TestingMySqlServer server;
+
+        @Setup(Level.Invocation)
+        public void setup()
+                throws Exception
+        {
+            server = new TestingMySqlServer("testuser", "testpass", ImmutableList.of("testdb"), MySqlOptions.builder().build());
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown()
+                throws IOException
+        {
+            // no-op if the benchmark closed it
+            server.close();
+        }
+
+        public TestingMySqlServer getServer()
+        {
+            return server;
+        }
+    }
+
+    // reports the phases of startServer next to its total time, so that a regression in one phase is visible on its own;
+    // JMH resets these for every iteration and sums them over the measurement iterations, and only cold starts unpack
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class StartupPhases
+    {
+        public double archiveExtractionMillis;
+        public double initializationMillis;
+        public double processLaunchMillis;
+        public double firstConnectionMillis;
+        public double provisioningMillis;
+
+        public void record(StartupStats stats)
+        {
+            archiveExtractionMillis += stats.getArchiveExtraction().getValue(MILLISECONDS);
+            initializationMillis += stats.getInitialization().getValue(MILLISECONDS);
+            processLaunchMillis += stats.getProcessLaunch().getValue(MILLISECONDS);
+            firstConnectionMillis += stats.getFirstConnection().getValue(MILLISECONDS);
+            provisioningMillis += stats.getProvisioning().getValue(MILLISECONDS);
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkServerLifecycle.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@State(Scope.Thread)
+@OutputTimeUnit(MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkServerOperations
+{
+    private final AtomicLong counter = new AtomicLong();
+
+    private TestingMySqlServer server;
+    private MySqlServerPool pool;
+
+    @Setup(Level.Trial)
+    public void setup()
+            throws Exception
+    {
+        server = new TestingMySqlServer("testuser", "testpass", ImmutableList.of(), MySqlOptions.builder().build());
+        pool = TestingMySqlServer.createPool(1, MySqlOptions.builder().build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+            throws IOException
+    {
+        server.close();
+        pool.close();
+    }
+
+    @Benchmark
+    public void createAndDropDatabase()
+            throws SQLException
+    {
+        String database = "benchmark_" + counter.incrementAndGet();
+        try (Connection connection = DriverManager.getConnection(server.getJdbcUrl());
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + database);
+            statement.execute("DROP DATABASE " + database);
+        }
+    }
+
+    @Benchmark
+    public void createAndDropUser()
+            throws SQLException
+    {
+        String user = "benchmark_" + counter.incrementAndGet();
+        try (Connection connection = DriverManager.getConnection(server.getJdbcUrl());
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE USER '" + user + "'@'localhost' IDENTIFIED BY 'secret'");
+            statement.execute("GRANT ALL ON *.* TO '" + user + "'@'localhost'");
+            statement.execute("DROP USER '" + user + "'@'localhost'");
+        }
+    }
+
+    @Benchmark
+    public void leaseDatabase()
+            throws Exception
+    {
+        pool.lease().close();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkServerOperations.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
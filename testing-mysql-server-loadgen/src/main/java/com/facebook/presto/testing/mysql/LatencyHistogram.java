@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import io.airlift.units.Duration;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.units.Duration.succinctNanos;
+
+// Records latencies in nanoseconds into log-linear buckets, in the manner of HdrHistogram: values below 128 are
+// exact, and larger values are kept with 64 buckets per power of two, which is a precision of at least 1.5%.
+// Recording is lock free and may be done from any number of threads.
+public final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    // about 18 minutes, larger values are recorded as this
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos)
+    {
+        checkArgument(nanos >= 0, "nanos is negative");
+        long value = Math.min(nanos, MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public Duration getMean()
+    {
+        long count = getCount();
+        return succinctNanos((count == 0) ? 0 : sum.get() / count);
+    }
+
+    public Duration getMax()
+    {
+        return succinctNanos(max.get());
+    }
+
+    // the highest value that is equivalent to the value at the percentile, or zero when nothing was recorded
+    public Duration getPercentile(double percentile)
+    {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+        long total = getCount();
+        if (total == 0) {
+            return succinctNanos(0);
+        }
+        long target = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+        long cumulative = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            cumulative += counts.get(index);
+            if (cumulative >= target) {
+                return succinctNanos(Math.min(highestEquivalentValue(index), max.get()));
+            }
+        }
+        return getMax();
+    }
+
+    static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // the shift that brings the value into the upper half of the sub-buckets
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (int) (value >> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    static long highestEquivalentValue(int index)
+    {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("count", getCount())
+                .add("mean", getMean())
+                .add("p50", getPercentile(50))
+                .add("p90", getPercentile(90))
+                .add("p99", getPercentile(99))
+                .add("p999", getPercentile(99.9))
+                .add("max", getMax())
+                .toString();
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.facebook.airlift.log.Logger;
+import io.airlift.units.Duration;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static io.airlift.units.Duration.succinctNanos;
+import static java.lang.String.format;
+import static java.util.Collections.nCopies;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// Drives a running server with a concurrent workload against a table in the given database, and records the
+// latency of every statement and the throughput. The statements use connections from the pooled data source of
+// the server, so set MySqlOptions.Builder#setConnectionPoolSize to at least the concurrency, otherwise the time
+// the workers wait for a connection is included in the latencies.
+public class LoadGenerator
+{
+    private static final Logger log = Logger.get(LoadGenerator.class);
+
+    private static final String TABLE = "loadgen_rows";
+
+    private final AbstractTestingMySqlServer server;
+    private final String database;
+    private final LoadOptions options;
+    private final DataSource dataSource;
+    private final String insertSql;
+    private final AtomicLong nextId = new AtomicLong();
+
+    private volatile Recording recording = new Recording();
+    private volatile boolean stopped;
+
+    public LoadGenerator(AbstractTestingMySqlServer server, String database, LoadOptions options)
+    {
+        this.server = requireNonNull(server, "server is null");
+        this.database = requireNonNull(database, "database is null");
+        this.options = requireNonNull(options, "options is null");
+        this.dataSource = server.getDataSource(database);
+        this.insertSql = format("INSERT INTO %s (id, value, payload) VALUES %s", TABLE, String.join(", ", nCopies(options.getBatchSize(), "(?, ?, ?)")));
+    }
+
+    // creates the table, replacing an existing one, and loads the initial rows
+    public void prepare()
+            throws SQLException
+    {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " (id bigint PRIMARY KEY, value bigint NOT NULL, payload varchar(100) NOT NULL)");
+        }
+        server.loadTable(database, TABLE, LongStream.range(0, options.getTableRows())
+                .mapToObj(id -> new Object[] {id, id, payload(id)}));
+        nextId.set(options.getTableRows());
+    }
+
+    // runs the workload for the warmup and the measured duration, the table must have been prepared
+    public synchronized LoadResult run()
+            throws InterruptedException
+    {
+        stopped = false;
+        recording = new Recording();
+        Schedule schedule = options.getRateLimit().isPresent() ? new Schedule(options.getRateLimit().getAsDouble()) : null;
+
+        ExecutorService executor = createExecutor();
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < options.getConcurrency(); i++) {
+                workers.add(executor.submit(() -> runWorker(schedule)));
+            }
+
+            NANOSECONDS.sleep(options.getWarmup().roundTo(NANOSECONDS));
+            Recording measured = new Recording();
+            recording = measured;
+            long start = System.nanoTime();
+            NANOSECONDS.sleep(options.getDuration().roundTo(NANOSECONDS));
+            // statements that complete from now on are not measured
+            recording = new Recording();
+            Duration elapsed = succinctNanos(System.nanoTime() - start);
+            stopped = true;
+
+            for (Future<?> worker : workers) {
+                worker.get(1, MINUTES);
+            }
+            return new LoadResult(options.getWorkload(), options.getConcurrency(), elapsed, measured.getLatencies(), measured.getErrors());
+        }
+        catch (ExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+        catch (TimeoutException e) {
+            throw new RuntimeException("Workers did not stop within one minute", e);
+        }
+        finally {
+            stopped = true;
+            executor.shutdownNow();
+        }
+    }
+
+    private void runWorker(Schedule schedule)
+    {
+        while (!stopped) {
+            long start;
+            if (schedule != null) {
+                // measured from the time the statement was due, so that the time it waited behind a slow
+                // statement counts, otherwise the percentiles omit the delays of rate limited runs
+                try {
+                    start = schedule.awaitNext();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            else {
+                start = System.nanoTime();
+            }
+            LoadOperation operation = options.getWorkload().nextOperation();
+            try {
+                execute(operation);
+                recording.record(operation, System.nanoTime() - start);
+            }
+            catch (SQLException e) {
+                recording.recordError(e);
+            }
+        }
+    }
+
+    private void execute(LoadOperation operation)
+            throws SQLException
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (Connection connection = dataSource.getConnection()) {
+            switch (operation) {
+                case POINT_LOOKUP:
+                    try (PreparedStatement statement = connection.prepareStatement("SELECT id, value, payload FROM " + TABLE + " WHERE id = ?")) {
+                        statement.setLong(1, random.nextLong(options.getTableRows()));
+                        readAll(statement);
+                    }
+                    break;
+                case RANGE_SCAN:
+                    try (PreparedStatement statement = connection.prepareStatement("SELECT id, value, payload FROM " + TABLE + " WHERE id BETWEEN ? AND ?")) {
+                        long start = random.nextLong(Math.max(options.getTableRows() - options.getRangeSize(), 1));
+                        statement.setLong(1, start);
+                        statement.setLong(2, start + options.getRangeSize() - 1);
+                        readAll(statement);
+                    }
+                    break;
+                case BULK_INSERT:
+                    try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                        long id = nextId.getAndAdd(options.getBatchSize());
+                        for (int i = 0; i < options.getBatchSize(); i++) {
+                            statement.setLong(i * 3 + 1, id + i);
+                            statement.setLong(i * 3 + 2, id + i);
+                            statement.setString(i * 3 + 3, payload(id + i));
+                        }
+                        statement.executeUpdate();
+                    }
+                    break;
+                case UPDATE:
+                    try (PreparedStatement statement = connection.prepareStatement("UPDATE " + TABLE + " SET value = value + 1 WHERE id = ?")) {
+                        statement.setLong(1, random.nextLong(options.getTableRows()));
+                        statement.executeUpdate();
+                    }
+                    break;
+            }
+        }
+    }
+
+    // the rows are transferred and decoded, as by a client that uses them
+    private static void readAll(PreparedStatement statement)
+            throws SQLException
+    {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                resultSet.getLong(1);
+                resultSet.getLong(2);
+                resultSet.getString(3);
+            }
+        }
+    }
+
+    private static String payload(long id)
+    {
+        return "payload " + id;
+    }
+
+    private ExecutorService createExecutor()
+    {
+        if (options.isUseVirtualThreads()) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                log.info("Virtual threads are not available, running the workers on platform threads");
+            }
+        }
+        return newFixedThreadPool(options.getConcurrency(), daemonThreadsNamed("testing-mysql-server-loadgen-%s"));
+    }
+
+    // the send times of a fixed rate, shared by the workers
+    private static class Schedule
+    {
+        private final long intervalNanos;
+        private final AtomicLong next = new AtomicLong(System.nanoTime());
+
+        public Schedule(double rate)
+        {
+            this.intervalNanos = Math.max(1, (long) (SECONDS.toNanos(1) / rate));
+        }
+
+        // waits for the next send time and returns it, a time in the past when the workers fell behind
+        public long awaitNext()
+                throws InterruptedException
+        {
+            long intended = next.getAndAdd(intervalNanos);
+            NANOSECONDS.sleep(intended - System.nanoTime());
+            return intended;
+        }
+    }
+
+    private static class Recording
+    {
+        private final Map<LoadOperation, LatencyHistogram> latencies = new EnumMap<>(LoadOperation.class);
+        private final AtomicLong errors = new AtomicLong();
+
+        public Recording()
+        {
+            for (LoadOperation operation : LoadOperation.values()) {
+                latencies.put(operation, new LatencyHistogram());
+            }
+        }
+
+        public void record(LoadOperation operation, long nanos)
+        {
+            latencies.get(operation).record(nanos);
+        }
+
+        public void recordError(SQLException e)
+        {
+            // the first error is logged, the others are only counted
+            if (errors.getAndIncrement() == 0) {
+                log.warn(e, "Statement failed");
+            }
+        }
+
+        // the operations of the workload
+        public Map<LoadOperation, LatencyHistogram> getLatencies()
+        {
+            Map<LoadOperation, LatencyHistogram> used = new EnumMap<>(LoadOperation.class);
+            latencies.forEach((operation, histogram) -> {
+                if (histogram.getCount() > 0) {
+                    used.put(operation, histogram);
+                }
+            });
+            return used;
+        }
+
+        public long getErrors()
+        {
+            return errors.get();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+// The statements issued by the workloads, against a table with a bigint primary key, see LoadGenerator
+public enum LoadOperation
+{
+    // a row by primary key
+    POINT_LOOKUP,
+    // a range of rows by primary key
+    RANGE_SCAN,
+    // one multi-row INSERT of new rows
+    BULK_INSERT,
+    // changes a column of a row by primary key
+    UPDATE
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import io.airlift.units.Duration;
+
+import java.util.OptionalDouble;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class LoadOptions
+{
+    private final Workload workload;
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+    private final OptionalDouble rateLimit;
+    private final int tableRows;
+    private final int rangeSize;
+    private final int batchSize;
+    private final boolean useVirtualThreads;
+
+    private LoadOptions(
+            Workload workload,
+            int concurrency,
+            Duration warmup,
+            Duration duration,
+            OptionalDouble rateLimit,
+            int tableRows,
+            int rangeSize,
+            int batchSize,
+            boolean useVirtualThreads)
+    {
+        this.workload = requireNonNull(workload, "workload is null");
+        this.concurrency = concurrency;
+        this.warmup = requireNonNull(warmup, "warmup is null");
+        this.duration = requireNonNull(duration, "duration is null");
+        this.rateLimit = requireNonNull(rateLimit, "rateLimit is null");
+        this.tableRows = tableRows;
+        this.rangeSize = rangeSize;
+        this.batchSize = batchSize;
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public Workload getWorkload()
+    {
+        return workload;
+    }
+
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    public Duration getWarmup()
+    {
+        return warmup;
+    }
+
+    public Duration getDuration()
+    {
+        return duration;
+    }
+
+    public OptionalDouble getRateLimit()
+    {
+        return rateLimit;
+    }
+
+    public int getTableRows()
+    {
+        return tableRows;
+    }
+
+    public int getRangeSize()
+    {
+        return rangeSize;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public boolean isUseVirtualThreads()
+    {
+        return useVirtualThreads;
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public static class Builder
+    {
+        private Workload workload = Workload.MIXED;
+        private int concurrency = 16;
+        private Duration warmup = new Duration(2, SECONDS);
+        private Duration duration = new Duration(10, SECONDS);
+        private OptionalDouble rateLimit = OptionalDouble.empty();
+        private int tableRows = 100_000;
+        private int rangeSize = 100;
+        private int batchSize = 100;
+        private boolean useVirtualThreads = true;
+
+        public Builder setWorkload(Workload workload)
+        {
+            this.workload = requireNonNull(workload, "workload is null");
+            return this;
+        }
+
+        // the number of workers, each issuing one statement at a time
+        public Builder setConcurrency(int concurrency)
+        {
+            checkArgument(concurrency > 0, "concurrency must be positive");
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        // the load is run for this long before the measurement starts
+        public Builder setWarmup(Duration warmup)
+        {
+            this.warmup = requireNonNull(warmup, "warmup is null");
+            return this;
+        }
+
+        public Builder setDuration(Duration duration)
+        {
+            this.duration = requireNonNull(duration, "duration is null");
+            return this;
+        }
+
+        // the maximum number of statements per second of all workers together
+        public Builder setRateLimit(double rateLimit)
+        {
+            checkArgument(rateLimit > 0, "rateLimit must be positive");
+            this.rateLimit = OptionalDouble.of(rateLimit);
+            return this;
+        }
+
+        // the number of rows loaded into the table before the run
+        public Builder setTableRows(int tableRows)
+        {
+            checkArgument(tableRows > 0, "tableRows must be positive");
+            this.tableRows = tableRows;
+            return this;
+        }
+
+        public Builder setRangeSize(int rangeSize)
+        {
+            checkArgument(rangeSize > 0, "rangeSize must be positive");
+            this.rangeSize = rangeSize;
+            return this;
+        }
+
+        public Builder setBatchSize(int batchSize)
+        {
+            checkArgument(batchSize > 0, "batchSize must be positive");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        // run the workers on virtual threads when the JVM supports them (Java 21 or later), or on platform threads
+        public Builder setUseVirtualThreads(boolean useVirtualThreads)
+        {
+            this.useVirtualThreads = useVirtualThreads;
+            return this;
+        }
+
+        public LoadOptions build()
+        {
+            return new LoadOptions(
+                    workload,
+                    concurrency,
+                    warmup,
+                    duration,
+                    rateLimit,
+                    tableRows,
+                    rangeSize,
+                    batchSize,
+                    useVirtualThreads);
+        }
+    }
+}
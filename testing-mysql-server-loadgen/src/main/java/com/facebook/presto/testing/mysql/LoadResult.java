@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+
+import java.util.Map;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public final class LoadResult
+{
+    private final Workload workload;
+    private final int concurrency;
+    private final Duration elapsed;
+    private final Map<LoadOperation, LatencyHistogram> latencies;
+    private final long errors;
+
+    public LoadResult(Workload workload, int concurrency, Duration elapsed, Map<LoadOperation, LatencyHistogram> latencies, long errors)
+    {
+        this.workload = requireNonNull(workload, "workload is null");
+        this.concurrency = concurrency;
+        this.elapsed = requireNonNull(elapsed, "elapsed is null");
+        this.latencies = ImmutableMap.copyOf(requireNonNull(latencies, "latencies is null"));
+        this.errors = errors;
+    }
+
+    public Workload getWorkload()
+    {
+        return workload;
+    }
+
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    public Duration getElapsed()
+    {
+        return elapsed;
+    }
+
+    // the latencies of the statements that succeeded, by operation; with a rate limit, a latency is measured from
+    // the time the statement was scheduled rather than sent, so it includes the time it waited for a busy worker
+    public Map<LoadOperation, LatencyHistogram> getLatencies()
+    {
+        return latencies;
+    }
+
+    public long getOperations()
+    {
+        return latencies.values().stream()
+                .mapToLong(LatencyHistogram::getCount)
+                .sum();
+    }
+
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    // successful statements per second
+    public double getThroughput()
+    {
+        return getOperations() / elapsed.getValue(SECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("workload", workload)
+                .add("concurrency", concurrency)
+                .add("elapsed", elapsed)
+                .add("operations", getOperations())
+                .add("errors", errors)
+                .add("throughput", format("%.1f/s", getThroughput()))
+                .add("latencies", latencies)
+                .toString();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.facebook.presto.testing.mysql.LoadOperation.BULK_INSERT;
+import static com.facebook.presto.testing.mysql.LoadOperation.POINT_LOOKUP;
+import static com.facebook.presto.testing.mysql.LoadOperation.RANGE_SCAN;
+import static com.facebook.presto.testing.mysql.LoadOperation.UPDATE;
+import static java.util.Collections.nCopies;
+
+public enum Workload
+{
+    POINT_LOOKUPS(ImmutableMap.of(POINT_LOOKUP, 100)),
+    RANGE_SCANS(ImmutableMap.of(RANGE_SCAN, 100)),
+    BULK_INSERTS(ImmutableMap.of(BULK_INSERT, 100)),
+    // mostly reads, with some single row updates and a few inserts, in percent
+    MIXED(ImmutableMap.of(POINT_LOOKUP, 70, RANGE_SCAN, 10, UPDATE, 15, BULK_INSERT, 5));
+
+    private final LoadOperation[] operations;
+
+    Workload(Map<LoadOperation, Integer> weights)
+    {
+        operations = weights.entrySet().stream()
+                .flatMap(entry -> nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(LoadOperation[]::new);
+    }
+
+    public LoadOperation nextOperation()
+    {
+        return operations[ThreadLocalRandom.current().nextInt(operations.length)];
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+
+// Runs each workload against a server of the module selected by the mysql-5 or mysql-8 profile and prints the results
+public final class LoadGeneratorMain
+{
+    private static final int CONCURRENCY = 32;
+
+    private LoadGeneratorMain() {}
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setConnectionPoolSize(CONCURRENCY)
+                .setPreparedStatementCacheSize(16)
+                .build();
+        try (TestingMySqlServer server = new TestingMySqlServer("testuser", "testpass", ImmutableList.of("loadgen"), mySqlOptions)) {
+            System.out.println("MySQL " + server.getMySqlVersion());
+            for (Workload workload : Workload.values()) {
+                LoadGenerator generator = new LoadGenerator(server, "loadgen", LoadOptions.builder()
+                        .setWorkload(workload)
+                        .setConcurrency(CONCURRENCY)
+                        .build());
+                generator.prepare();
+                System.out.println(generator.run());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.testing.mysql.LatencyHistogram.bucketIndex;
+import static com.facebook.presto.testing.mysql.LatencyHistogram.highestEquivalentValue;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestLatencyHistogram
+{
+    @Test
+    public void testBuckets()
+    {
+        assertEquals(bucketIndex(127), 127);
+        assertEquals(bucketIndex(128), 128);
+        assertEquals(bucketIndex(129), 128);
+        assertEquals(bucketIndex(130), 129);
+        assertEquals(highestEquivalentValue(bucketIndex(129)), 129);
+
+        // every value is within the bucket bounds, which are within 1.5% of each other
+        for (long value = 1; value < (1L << 40); value = value * 3 / 2 + 1) {
+            long highest = highestEquivalentValue(bucketIndex(value));
+            assertTrue(highest >= value && highest <= value * 1.016, value + " in bucket up to " + highest);
+            assertEquals(bucketIndex(highest), bucketIndex(value));
+            assertEquals(bucketIndex(highest + 1), bucketIndex(value) + 1);
+        }
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.getPercentile(99).roundTo(NANOSECONDS), 0);
+
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(histogram.getCount(), 10_000);
+        assertEquals(histogram.getMax().roundTo(NANOSECONDS), 10_000_000);
+        assertEquals(histogram.getMean().roundTo(NANOSECONDS), 5_000_500);
+        assertWithinPrecision(histogram.getPercentile(50).roundTo(NANOSECONDS), 5_000_000);
+        assertWithinPrecision(histogram.getPercentile(99).roundTo(NANOSECONDS), 9_900_000);
+        assertEquals(histogram.getPercentile(100).roundTo(NANOSECONDS), 10_000_000);
+    }
+
+    private static void assertWithinPrecision(long actual, long expected)
+    {
+        assertTrue(actual >= expected && actual <= expected * 1.016, actual + " is not within 1.6% of " + expected);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.testing.mysql;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestLoadGenerator
+{
+    @Test
+    public void testWorkloads()
+            throws Exception
+    {
+        MySqlOptions mySqlOptions = MySqlOptions.builder()
+                .setConnectionPoolSize(4)
+                .build();
+        try (TestingMySqlServer server = new TestingMySqlServer("testuser", "testpass", ImmutableList.of("loadgen"), mySqlOptions)) {
+            for (Workload workload : Workload.values()) {
+                LoadOptions options = LoadOptions.builder()
+                        .setWorkload(workload)
+                        .setConcurrency(4)
+                        .setWarmup(new Duration(100, MILLISECONDS))
+                        .setDuration(new Duration(500, MILLISECONDS))
+                        .setTableRows(1000)
+                        .build();
+                LoadGenerator generator = new LoadGenerator(server, "loadgen", options);
+                generator.prepare();
+                LoadResult result = generator.run();
+
+                assertEquals(result.getErrors(), 0);
+                assertTrue(result.getOperations() > 0);
+                assertTrue(result.getThroughput() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testRateLimit()
+            throws Exception
+    {
+        try (TestingMySqlServer server = new TestingMySqlServer("testuser", "testpass", "loadgen")) {
+            LoadOptions options = LoadOptions.builder()
+                    .setWorkload(Workload.POINT_LOOKUPS)
+                    .setConcurrency(2)
+                    .setWarmup(new Duration(0, MILLISECONDS))
+                    .setDuration(new Duration(1000, MILLISECONDS))
+                    .setRateLimit(50)
+                    .setTableRows(100)
+                    .build();
+            LoadGenerator generator = new LoadGenerator(server, "loadgen", options);
+            generator.prepare();
+            LoadResult result = generator.run();
+
+            assertTrue(result.getOperations() <= 60, "operations: " + result.getOperations());
+        }
+    }
+}